@@ -0,0 +1,35 @@
+package com.softwareverde.wow.bingo;
+
+import com.softwareverde.constable.list.List;
+import com.softwareverde.constable.list.immutable.ImmutableListBuilder;
+
+public class BenchmarkUtil {
+    public static final Long SEED = 1234567L;
+    public static final Integer TICKET_COST = 500;
+
+    public static List<String> createLabels(final Integer labelCount) {
+        final ImmutableListBuilder<String> listBuilder = new ImmutableListBuilder<>(labelCount);
+        for (int i = 0; i < labelCount; ++i) {
+            listBuilder.add("Label " + i);
+        }
+        return listBuilder.build();
+    }
+
+    public static String getPlayerName(final Integer playerIndex) {
+        return ("player" + playerIndex);
+    }
+
+    /**
+     * Creates a BingoState with playerCount players, every other one of which has paid.
+     */
+    public static BingoState createBingoState(final Integer labelCount, final Integer playerCount) {
+        final BingoState bingoState = new BingoState(BenchmarkUtil.createLabels(labelCount), TICKET_COST, SEED);
+        for (int i = 0; i < playerCount; ++i) {
+            final Integer playerId = bingoState.newBingoGame(BenchmarkUtil.getPlayerName(i));
+            bingoState.setHasPaid(playerId, ((i % 2) == 0));
+        }
+        return bingoState;
+    }
+
+    protected BenchmarkUtil() { }
+}
@@ -0,0 +1,73 @@
+package com.softwareverde.wow.bingo;
+
+import com.softwareverde.json.Json;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the per-board operations: bingo detection, board generation, and the per-socket gameState JSON encoding.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BingoGameBenchmark {
+    @Param({ "25", "50", "100" })
+    public int labelCount;
+
+    protected BingoGame _bingoGame;
+    protected long _nextSeed;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        _bingoGame = new BingoGame(0, labelCount, BenchmarkUtil.SEED);
+
+        // Mark a row and a few scattered cells so the board has a bingo...
+        for (int i = 0; i < BingoGame.BOARD_WIDTH; ++i) {
+            _bingoGame.setCellMarked(i, true);
+        }
+        _bingoGame.setCellMarked(7, true);
+        _bingoGame.setCellMarked(13, true);
+
+        _nextSeed = BenchmarkUtil.SEED;
+    }
+
+    @Benchmark
+    public int getBingoCount() {
+        return _bingoGame._getBingoCount();
+    }
+
+    @Benchmark
+    public int[] generateLayout() {
+        _nextSeed += 1L;
+        return BingoGame.generateLayout(labelCount, _nextSeed);
+    }
+
+    /**
+     * Encodes the gameState message sent to a single socket, as the getGameState response does for every player that (re)loads its board.
+     */
+    @Benchmark
+    public String encodeGameState() {
+        final Json responseJson = new Json();
+        responseJson.put("requestId", null);
+        responseJson.put("wasSuccess", 1);
+        responseJson.put("gameState", _bingoGame.toJson());
+        responseJson.put("jackpot", 12345L);
+        responseJson.put("version", 1L);
+        return responseJson.toString();
+    }
+}
@@ -0,0 +1,76 @@
+package com.softwareverde.wow.bingo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the BingoState operations performed on the BingoStateEventLoop: marking labels, joining, and computing the jackpot.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = { "-Xms4g", "-Xmx4g" })
+public class BingoStateBenchmark {
+    @Param({ "1000", "10000", "100000", "1000000" })
+    public int playerCount;
+
+    @Param({ "25", "50", "100" })
+    public int labelCount;
+
+    protected BingoState _bingoState;
+    protected int _nextLabelIndex;
+    protected int _nextPlayerIndex;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        _bingoState = BenchmarkUtil.createBingoState(labelCount, playerCount);
+        _nextLabelIndex = 0;
+        _nextPlayerIndex = playerCount;
+    }
+
+    /**
+     * Toggles each label in turn, so the boards cycle through marked, bingo, and unmarked states.
+     */
+    @Benchmark
+    public Integer markLabel() {
+        final int labelIndex = _nextLabelIndex;
+        _nextLabelIndex = ((_nextLabelIndex + 1) % labelCount);
+
+        final Boolean isMarked = (! _bingoState.isLabelMarked(labelIndex));
+        _bingoState.markLabel(labelIndex, isMarked);
+        return _bingoState.getWinnerCount();
+    }
+
+    @Benchmark
+    public Integer newBingoGame() {
+        final String playerName = BenchmarkUtil.getPlayerName(_nextPlayerIndex);
+        _nextPlayerIndex += 1;
+        return _bingoState.newBingoGame(playerName);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Long getJackpot() {
+        return _bingoState.getJackpot();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Long getPayout() {
+        return _bingoState.getJackpot(0);
+    }
+}
@@ -0,0 +1,48 @@
+package com.softwareverde.wow.bingo.loadtest;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Collects latency samples, in nanoseconds, into a preallocated array so that recording does not allocate.
+ *  Samples beyond the capacity are counted but discarded.
+ */
+public class LatencyRecorder {
+    protected final long[] _samples;
+    protected final AtomicInteger _sampleCount = new AtomicInteger(0);
+
+    public LatencyRecorder(final Integer capacity) {
+        _samples = new long[capacity];
+    }
+
+    public void record(final long nanoseconds) {
+        final int index = _sampleCount.getAndIncrement();
+        if (index < _samples.length) {
+            _samples[index] = nanoseconds;
+        }
+    }
+
+    public Integer getSampleCount() {
+        return _sampleCount.get();
+    }
+
+    /**
+     * Returns the recorded samples, sorted ascending.
+     */
+    public long[] getSortedSamples() {
+        final int sampleCount = Math.min(_sampleCount.get(), _samples.length);
+        final long[] samples = Arrays.copyOf(_samples, sampleCount);
+        Arrays.sort(samples);
+        return samples;
+    }
+
+    /**
+     * Returns the sample at the percentile (0.0 - 1.0) of the sorted samples, or 0 if there are no samples.
+     */
+    public static long getPercentile(final long[] sortedSamples, final double percentile) {
+        if (sortedSamples.length == 0) { return 0L; }
+
+        final int index = (int) Math.ceil(percentile * sortedSamples.length) - 1;
+        return sortedSamples[Math.max(0, Math.min(index, sortedSamples.length - 1))];
+    }
+}
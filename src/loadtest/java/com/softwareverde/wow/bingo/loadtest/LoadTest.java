@@ -0,0 +1,152 @@
+package com.softwareverde.wow.bingo.loadtest;
+
+import com.softwareverde.constable.list.List;
+import com.softwareverde.constable.list.immutable.ImmutableListBuilder;
+import com.softwareverde.logging.LineNumberAnnotatedLog;
+import com.softwareverde.logging.LogLevel;
+import com.softwareverde.logging.Logger;
+import com.softwareverde.util.Util;
+import com.softwareverde.wow.bingo.BingoServer;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.util.HashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.BiConsumer;
+
+/**
+ * Starts a BingoServer in-process and drives it over loopback with simulated players and a scripted admin.
+ *  Reports the sustained join rate and the latency from each admin mark being sent to each player receiving it.
+ *
+ *  Arguments (all optional):
+ *      --port <port>               The port the in-process server listens on. (18080)
+ *      --players <count>           The number of simulated players. (1000)
+ *      --marks <count>             The number of marks the admin sends. (50)
+ *      --labels <count>            The number of square labels. (50)
+ *      --interval <milliseconds>   The delay between marks. (100)
+ *      --connections <count>       The maximum number of concurrently-opening player connections. (256)
+ */
+public class LoadTest {
+    protected static final String ADMIN_PASSWORD = "loadtest";
+    protected static final Integer TICKET_COST = 500;
+    protected static final Long SEED = 1234567L;
+
+    protected static HashMap<String, String> _parseArguments(final String[] arguments) {
+        final HashMap<String, String> parsedArguments = new HashMap<>();
+        for (int i = 0; (i + 1) < arguments.length; i += 2) {
+            final String key = arguments[i].replaceFirst("^--", "");
+            parsedArguments.put(key, arguments[i + 1]);
+        }
+        return parsedArguments;
+    }
+
+    protected static Integer _getInteger(final HashMap<String, String> arguments, final String key, final Integer defaultValue) {
+        final String value = arguments.get(key);
+        if (value == null) { return defaultValue; }
+        return Util.parseInt(value);
+    }
+
+    protected static String _formatMilliseconds(final long nanoseconds) {
+        return String.format("%.3fms", (nanoseconds / 1000000D));
+    }
+
+    public static void main(final String[] parameters) throws Exception {
+        Logger.setLog(LineNumberAnnotatedLog.getInstance());
+        Logger.setLogLevel(LogLevel.WARN);
+
+        final HashMap<String, String> arguments = LoadTest._parseArguments(parameters);
+        final int port = _getInteger(arguments, "port", 18080);
+        final int playerCount = _getInteger(arguments, "players", 1000);
+        final int markCount = _getInteger(arguments, "marks", 50);
+        final int labelCount = _getInteger(arguments, "labels", 50);
+        final int markInterval = _getInteger(arguments, "interval", 100);
+        final int maxConcurrentConnections = _getInteger(arguments, "connections", 256);
+
+        final List<String> labels;
+        {
+            final ImmutableListBuilder<String> listBuilder = new ImmutableListBuilder<>(labelCount);
+            for (int i = 0; i < labelCount; ++i) {
+                listBuilder.add("Label " + i);
+            }
+            labels = listBuilder.build();
+        }
+
+        final BingoServer bingoServer = new BingoServer(labels, TICKET_COST, SEED, ADMIN_PASSWORD);
+        bingoServer.setPort(port);
+        bingoServer.start();
+        System.out.println("[Server listening on port " + port + "]");
+
+        final URI uri = URI.create("ws://127.0.0.1:" + port + "/api/v1/websocket");
+        final HttpClient httpClient = HttpClient.newHttpClient();
+
+        final AtomicLongArray markSentNanoTimes = new AtomicLongArray(markCount + 1);
+        final LatencyRecorder markLatencyRecorder = new LatencyRecorder(playerCount * markCount);
+        final LatencyRecorder joinLatencyRecorder = new LatencyRecorder(playerCount);
+        final CountDownLatch joinedLatch = new CountDownLatch(playerCount);
+        final AtomicInteger failedConnectionCount = new AtomicInteger(0);
+
+        { // Join the players...
+            final Semaphore connectionSemaphore = new Semaphore(maxConcurrentConnections);
+            final long joinStartTime = System.nanoTime();
+            for (int i = 0; i < playerCount; ++i) {
+                final SimulatedPlayer simulatedPlayer = new SimulatedPlayer(("player" + i), markSentNanoTimes, markLatencyRecorder, joinLatencyRecorder, joinedLatch);
+
+                connectionSemaphore.acquire();
+                final long connectStartTime = System.nanoTime();
+                httpClient.newWebSocketBuilder().buildAsync(uri, simulatedPlayer).whenComplete(new BiConsumer<WebSocket, Throwable>() {
+                    @Override
+                    public void accept(final WebSocket webSocket, final Throwable error) {
+                        connectionSemaphore.release();
+
+                        if (error != null) {
+                            failedConnectionCount.incrementAndGet();
+                            joinedLatch.countDown();
+                            return;
+                        }
+
+                        simulatedPlayer.join(connectStartTime);
+                    }
+                });
+            }
+
+            final boolean allJoined = joinedLatch.await(5L, TimeUnit.MINUTES);
+            final long joinElapsed = (System.nanoTime() - joinStartTime);
+            final long[] joinLatencies = joinLatencyRecorder.getSortedSamples();
+            final double joinsPerSecond = (joinLatencies.length / (joinElapsed / 1000000000D));
+
+            System.out.println("[Joined " + joinLatencies.length + " of " + playerCount + " players in " + _formatMilliseconds(joinElapsed) + (allJoined ? "" : " (timed out)") + "; " + failedConnectionCount.get() + " failed connections]");
+            System.out.println(String.format("[Join rate %.1f/s] p50=%s p99=%s max=%s", joinsPerSecond, _formatMilliseconds(LatencyRecorder.getPercentile(joinLatencies, 0.50D)), _formatMilliseconds(LatencyRecorder.getPercentile(joinLatencies, 0.99D)), _formatMilliseconds(LatencyRecorder.getPercentile(joinLatencies, 1.0D))));
+        }
+
+        { // Drive the game with the admin...
+            final SimulatedAdmin simulatedAdmin = new SimulatedAdmin(ADMIN_PASSWORD, markSentNanoTimes);
+            httpClient.newWebSocketBuilder().buildAsync(uri, simulatedAdmin).join();
+
+            for (int i = 1; i <= markCount; ++i) {
+                final int labelIndex = ((i - 1) % labelCount);
+                final boolean isMarked = ((((i - 1) / labelCount) % 2) == 0);
+                simulatedAdmin.mark(i, labelIndex, isMarked);
+
+                Thread.sleep(markInterval);
+            }
+
+            final int expectedSampleCount = (joinLatencyRecorder.getSampleCount() * markCount);
+            final long deadline = (System.currentTimeMillis() + 30000L);
+            while ( (markLatencyRecorder.getSampleCount() < expectedSampleCount) && (System.currentTimeMillis() < deadline) ) {
+                Thread.sleep(100L);
+            }
+
+            final long[] markLatencies = markLatencyRecorder.getSortedSamples();
+            System.out.println("[Received " + markLatencies.length + " of " + expectedSampleCount + " mark deliveries]");
+            System.out.println("[Mark latency] p50=" + _formatMilliseconds(LatencyRecorder.getPercentile(markLatencies, 0.50D)) + " p99=" + _formatMilliseconds(LatencyRecorder.getPercentile(markLatencies, 0.99D)) + " max=" + _formatMilliseconds(LatencyRecorder.getPercentile(markLatencies, 1.0D)));
+        }
+
+        bingoServer.stop();
+        System.exit(0);
+    }
+}
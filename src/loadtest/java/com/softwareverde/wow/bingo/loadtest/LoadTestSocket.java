@@ -0,0 +1,74 @@
+package com.softwareverde.wow.bingo.loadtest;
+
+import com.softwareverde.json.Json;
+import com.softwareverde.logging.Logger;
+
+import java.net.http.WebSocket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * A WebSocket.Listener that reassembles text frames into whole messages and answers pings.
+ */
+public abstract class LoadTestSocket implements WebSocket.Listener {
+    protected final StringBuilder _partialMessage = new StringBuilder();
+    protected volatile WebSocket _webSocket;
+
+    protected abstract void _onMessage(final Json message, final long receivedNanoTime);
+
+    protected void _send(final Json message) {
+        final WebSocket webSocket = _webSocket;
+        if (webSocket == null) { return; }
+
+        // NOTE: The JDK WebSocket permits only one outstanding send at a time.
+        synchronized (this) {
+            webSocket.sendText(message.toString(), true).join();
+        }
+    }
+
+    @Override
+    public void onOpen(final WebSocket webSocket) {
+        _webSocket = webSocket;
+        webSocket.request(1L);
+    }
+
+    @Override
+    public CompletionStage<?> onText(final WebSocket webSocket, final CharSequence data, final boolean isLast) {
+        final long receivedNanoTime = System.nanoTime();
+
+        _partialMessage.append(data);
+        if (isLast) {
+            final String messageString = _partialMessage.toString();
+            _partialMessage.setLength(0);
+
+            try {
+                final Json message = Json.parse(messageString);
+                if (message.hasKey("ping")) {
+                    final Json pong = new Json(false);
+                    pong.put("pong", message.getLong("ping"));
+                    _send(pong);
+                }
+                else {
+                    _onMessage(message, receivedNanoTime);
+                }
+            }
+            catch (final Exception exception) {
+                Logger.debug(exception);
+            }
+        }
+
+        webSocket.request(1L);
+        return null;
+    }
+
+    @Override
+    public CompletionStage<?> onBinary(final WebSocket webSocket, final ByteBuffer data, final boolean isLast) {
+        webSocket.request(1L);
+        return null;
+    }
+
+    @Override
+    public void onError(final WebSocket webSocket, final Throwable error) {
+        Logger.debug(error);
+    }
+}
@@ -0,0 +1,41 @@
+package com.softwareverde.wow.bingo.loadtest;
+
+import com.softwareverde.json.Json;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * An admin that marks labels via updateGlobalGameState, recording when each mark was sent.
+ */
+public class SimulatedAdmin extends LoadTestSocket {
+    protected final String _password;
+    protected final AtomicLongArray _markSentNanoTimes; // Indexed by the version the mark produces.
+    protected int _nextRequestId = 1;
+
+    @Override
+    protected void _onMessage(final Json message, final long receivedNanoTime) { }
+
+    public SimulatedAdmin(final String password, final AtomicLongArray markSentNanoTimes) {
+        _password = password;
+        _markSentNanoTimes = markSentNanoTimes;
+    }
+
+    /**
+     * Sends the mark that will produce the version; the server must have no other admin, so that versions are sequential.
+     */
+    public void mark(final Integer version, final Integer labelIndex, final Boolean isMarked) {
+        final Json parameters = new Json(false);
+        parameters.put("password", _password);
+        parameters.put("index", labelIndex);
+        parameters.put("isMarked", (isMarked ? 1 : 0));
+
+        final Json request = new Json(false);
+        request.put("requestId", _nextRequestId);
+        request.put("query", "updateGlobalGameState");
+        request.put("parameters", parameters);
+        _nextRequestId += 1;
+
+        _markSentNanoTimes.set(version, System.nanoTime());
+        _send(request);
+    }
+}
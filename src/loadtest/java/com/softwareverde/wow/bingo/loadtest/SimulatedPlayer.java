@@ -0,0 +1,66 @@
+package com.softwareverde.wow.bingo.loadtest;
+
+import com.softwareverde.json.Json;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A player that joins via getGameState and then records how long each admin mark took to arrive.
+ */
+public class SimulatedPlayer extends LoadTestSocket {
+    protected final String _username;
+    protected final AtomicLongArray _markSentNanoTimes; // Indexed by the version the mark produced.
+    protected final LatencyRecorder _markLatencyRecorder;
+    protected final LatencyRecorder _joinLatencyRecorder;
+    protected final CountDownLatch _joinedLatch;
+
+    protected long _joinStartNanoTime;
+
+    protected void _onMark(final Long version, final long receivedNanoTime) {
+        if ( (version == null) || (version < 1L) || (version >= _markSentNanoTimes.length()) ) { return; }
+
+        final long sentNanoTime = _markSentNanoTimes.get(version.intValue());
+        if (sentNanoTime == 0L) { return; }
+
+        _markLatencyRecorder.record(receivedNanoTime - sentNanoTime);
+    }
+
+    @Override
+    protected void _onMessage(final Json message, final long receivedNanoTime) {
+        final Integer requestId = message.getInteger("requestId");
+        if ( (requestId != null) && (requestId == 1) ) {
+            _joinLatencyRecorder.record(receivedNanoTime - _joinStartNanoTime);
+            _joinedLatch.countDown();
+            return;
+        }
+
+        if (message.hasKey("marked")) {
+            _onMark(message.getLong("version"), receivedNanoTime);
+        }
+    }
+
+    public SimulatedPlayer(final String username, final AtomicLongArray markSentNanoTimes, final LatencyRecorder markLatencyRecorder, final LatencyRecorder joinLatencyRecorder, final CountDownLatch joinedLatch) {
+        _username = username;
+        _markSentNanoTimes = markSentNanoTimes;
+        _markLatencyRecorder = markLatencyRecorder;
+        _joinLatencyRecorder = joinLatencyRecorder;
+        _joinedLatch = joinedLatch;
+    }
+
+    /**
+     * Requests the player's board; joinStartNanoTime is when the player began connecting.
+     */
+    public void join(final long joinStartNanoTime) {
+        _joinStartNanoTime = joinStartNanoTime;
+
+        final Json parameters = new Json(false);
+        parameters.put("username", _username);
+
+        final Json request = new Json(false);
+        request.put("requestId", 1);
+        request.put("query", "getGameState");
+        request.put("parameters", parameters);
+        _send(request);
+    }
+}
@@ -0,0 +1,316 @@
+package com.softwareverde.wow.bingo;
+
+import com.softwareverde.json.Json;
+import com.softwareverde.logging.Logger;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records every mark, paid change, and winner of a room, one Json object per line, for settling disputes about who bingoed first.
+ *  Events are recorded on the room's event loop into a fixed ring of preallocated slots, without locking or allocating, and are written
+ *  to the file by a background thread, so the event loop never waits on the disk.  If the writer falls a full ring behind then events
+ *  are dropped rather than blocking the event loop, and the number of dropped events is recorded within the file after the events that filled the ring.
+ *  The file is rotated once it exceeds its maximum size, keeping a fixed number of previous files as "audit.log.1", "audit.log.2", etc.
+ *
+ *  Timestamps are nanoseconds since the epoch: a wall-clock reading taken once at start, advanced by System.nanoTime,
+ *  so events within the file are ordered exactly as they were applied even if the wall clock is adjusted.
+ */
+public class AuditLog implements BingoState.ChangeListener {
+    public static final Integer DEFAULT_CAPACITY = 65536; // Must be a power of two.
+    public static final Long DEFAULT_MAX_FILE_BYTE_COUNT = (16L * 1024L * 1024L);
+    public static final Integer DEFAULT_MAX_ROTATED_FILE_COUNT = 5;
+    protected static final Long IDLE_SLEEP_MS = 10L;
+
+    protected static final byte EVENT_TYPE_MARK = 1;
+    protected static final byte EVENT_TYPE_PAID = 2;
+    protected static final byte EVENT_TYPE_WINNER = 3;
+
+    /**
+     * A preallocated event; a slot may only be read once its sequence is the sequence being read, and is reused once it has been written.
+     */
+    protected static class Slot {
+        public volatile long sequence = -1L; // Written last by the producer, publishing the slot's fields.
+        public long claimedSequence;
+        public byte eventType;
+        public long timestamp;
+        public long version;
+        public int labelIndex;
+        public boolean isMarked;
+        public int playerId;
+        public String playerName;
+        public boolean hasPaid;
+        public int winnerIndex;
+    }
+
+    protected final String _roomId;
+    protected final BingoState _bingoState;
+    protected final File _file;
+    protected final Long _maxFileByteCount;
+    protected final Integer _maxRotatedFileCount;
+
+    protected final Slot[] _slots;
+    protected final int _slotMask;
+    protected final AtomicLong _nextSequence = new AtomicLong(0L); // The next sequence to be claimed by a producer.
+    protected volatile long _readSequence = 0L; // The next sequence to be written; only advanced by the writer thread.
+    protected final AtomicLong _droppedEventCount = new AtomicLong(0L);
+
+    protected final long _epochNanoseconds = (System.currentTimeMillis() * 1000000L);
+    protected final long _epochNanoTime = System.nanoTime();
+
+    protected BufferedWriter _writer;
+    protected long _fileByteCount;
+    protected Thread _thread;
+
+    /**
+     * Claims the next slot, or returns null if the ring is full; the claimed slot must be published via AuditLog::_publish.
+     */
+    protected Slot _claimSlot(final byte eventType, final long version) {
+        while (true) {
+            final long sequence = _nextSequence.get();
+            if ((sequence - _readSequence) >= _slots.length) {
+                _droppedEventCount.incrementAndGet();
+                return null;
+            }
+
+            if (_nextSequence.compareAndSet(sequence, (sequence + 1L))) {
+                final Slot slot = _slots[(int) (sequence & _slotMask)];
+                slot.claimedSequence = sequence;
+                slot.eventType = eventType;
+                slot.timestamp = (_epochNanoseconds + (System.nanoTime() - _epochNanoTime));
+                slot.version = version;
+                return slot;
+            }
+        }
+    }
+
+    protected void _publish(final Slot slot) {
+        slot.sequence = slot.claimedSequence;
+    }
+
+    protected Json _toJson(final Slot slot) {
+        final Json json = new Json(false);
+        json.put("timestamp", slot.timestamp);
+        json.put("room", _roomId);
+        json.put("version", slot.version);
+
+        switch (slot.eventType) {
+            case EVENT_TYPE_MARK: {
+                json.put("event", "mark");
+                json.put("labelIndex", slot.labelIndex);
+                json.put("isMarked", slot.isMarked);
+            } break;
+
+            case EVENT_TYPE_PAID: {
+                json.put("event", "paid");
+                json.put("playerId", slot.playerId);
+                json.put("player", slot.playerName);
+                json.put("hasPaid", slot.hasPaid);
+            } break;
+
+            case EVENT_TYPE_WINNER: {
+                json.put("event", "winner");
+                json.put("winnerIndex", slot.winnerIndex);
+                json.put("playerId", slot.playerId);
+                json.put("player", slot.playerName);
+            } break;
+        }
+        return json;
+    }
+
+    protected void _openFile() throws IOException {
+        _writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(_file, true), StandardCharsets.UTF_8));
+        _fileByteCount = _file.length();
+    }
+
+    protected void _rotateFile() throws IOException {
+        _writer.close();
+
+        final String path = _file.getPath();
+        final File oldestFile = new File(path + "." + _maxRotatedFileCount);
+        if (oldestFile.exists() && (! oldestFile.delete())) {
+            Logger.warn("Unable to delete rotated audit log: " + oldestFile.getPath());
+        }
+        for (int i = (_maxRotatedFileCount - 1); i >= 1; --i) {
+            final File rotatedFile = new File(path + "." + i);
+            if (rotatedFile.exists()) {
+                rotatedFile.renameTo(new File(path + "." + (i + 1)));
+            }
+        }
+        if (_maxRotatedFileCount > 0) {
+            _file.renameTo(new File(path + ".1"));
+        }
+        else {
+            _file.delete();
+        }
+
+        _openFile();
+    }
+
+    protected void _writeLine(final String line) throws IOException {
+        _writer.write(line);
+        _writer.write('\n');
+        _fileByteCount += (line.length() + 1); // Approximate for multi-byte names, which only affects when the file is rotated.
+
+        if (_fileByteCount >= _maxFileByteCount) {
+            _rotateFile();
+        }
+    }
+
+    /**
+     * Writes every published event; returns the number of events written.
+     */
+    protected int _drain() throws IOException {
+        final long droppedEventCount = _droppedEventCount.getAndSet(0L);
+
+        int eventCount = 0;
+        while (true) {
+            final long readSequence = _readSequence;
+            final Slot slot = _slots[(int) (readSequence & _slotMask)];
+            if (slot.sequence != readSequence) { break; } // Not yet published.
+
+            final String line = _toJson(slot).toString();
+            slot.playerName = null;
+            _readSequence = (readSequence + 1L); // Releases the slot to the producers.
+
+            _writeLine(line);
+            eventCount += 1;
+        }
+
+        // The events were dropped because the ring was full, so they followed the events that were within it...
+        if (droppedEventCount > 0L) {
+            final Json json = new Json(false);
+            json.put("timestamp", (_epochNanoseconds + (System.nanoTime() - _epochNanoTime)));
+            json.put("room", _roomId);
+            json.put("event", "dropped");
+            json.put("count", droppedEventCount);
+            _writeLine(json.toString());
+            Logger.warn("[" + _roomId + ": Dropped " + droppedEventCount + " audit events]");
+        }
+        return eventCount;
+    }
+
+    protected void _run() {
+        final Thread thread = Thread.currentThread();
+        while (true) {
+            try {
+                final int eventCount = _drain();
+                if (eventCount == 0) {
+                    _writer.flush();
+                    if (thread.isInterrupted()) { break; }
+
+                    try { Thread.sleep(IDLE_SLEEP_MS); }
+                    catch (final InterruptedException exception) {
+                        thread.interrupt(); // Drain once more before exiting.
+                    }
+                }
+            }
+            catch (final IOException exception) {
+                Logger.warn("Unable to write audit log: " + _file.getPath(), exception);
+                if (thread.isInterrupted()) { break; }
+                try { Thread.sleep(1000L); } catch (final InterruptedException interruptedException) { thread.interrupt(); }
+            }
+        }
+
+        try { _writer.close(); }
+        catch (final IOException exception) {
+            Logger.warn("Unable to close audit log: " + _file.getPath(), exception);
+        }
+    }
+
+    public AuditLog(final String roomId, final BingoState bingoState, final File file) {
+        this(roomId, bingoState, file, DEFAULT_CAPACITY, DEFAULT_MAX_FILE_BYTE_COUNT, DEFAULT_MAX_ROTATED_FILE_COUNT);
+    }
+
+    public AuditLog(final String roomId, final BingoState bingoState, final File file, final Integer capacity, final Long maxFileByteCount, final Integer maxRotatedFileCount) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+
+        _roomId = roomId;
+        _bingoState = bingoState;
+        _file = file;
+        _maxFileByteCount = maxFileByteCount;
+        _maxRotatedFileCount = maxRotatedFileCount;
+
+        _slots = new Slot[capacity];
+        for (int i = 0; i < capacity; ++i) {
+            _slots[i] = new Slot();
+        }
+        _slotMask = (capacity - 1);
+    }
+
+    @Override
+    public void onPlayerJoined(final String playerName) {
+        // Joins are recorded by the journal; the audit log only records the events that decide payouts.
+    }
+
+    @Override
+    public void onLabelMarked(final Integer labelIndex, final Boolean isMarked) {
+        // Marks and winners are recorded as the mark is applied, before BingoState::markLabel increments the version...
+        final Slot slot = _claimSlot(EVENT_TYPE_MARK, (_bingoState.getVersion() + 1L));
+        if (slot == null) { return; }
+
+        slot.labelIndex = labelIndex;
+        slot.isMarked = isMarked;
+        _publish(slot);
+    }
+
+    @Override
+    public void onPaidChanged(final Integer playerId, final Boolean hasPaid) {
+        final Slot slot = _claimSlot(EVENT_TYPE_PAID, _bingoState.getVersion());
+        if (slot == null) { return; }
+
+        slot.playerId = playerId;
+        slot.playerName = _bingoState.getPlayerName(playerId);
+        slot.hasPaid = hasPaid;
+        _publish(slot);
+    }
+
+    @Override
+    public void onWinnerAdded(final Integer playerId, final Integer winnerIndex) {
+        final Slot slot = _claimSlot(EVENT_TYPE_WINNER, (_bingoState.getVersion() + 1L));
+        if (slot == null) { return; }
+
+        slot.playerId = playerId;
+        slot.playerName = _bingoState.getPlayerName(playerId);
+        slot.winnerIndex = winnerIndex;
+        _publish(slot);
+    }
+
+    public void start() throws IOException {
+        _openFile();
+
+        _thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                _run();
+            }
+        });
+        _thread.setName("Audit Log Writer - " + _roomId);
+        _thread.setDaemon(true);
+        _thread.setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+            @Override
+            public void uncaughtException(final Thread thread, final Throwable exception) {
+                Logger.error(exception);
+            }
+        });
+        _thread.start();
+    }
+
+    /**
+     * Writes every recorded event and closes the file.
+     */
+    public void stop() {
+        if (_thread == null) { return; }
+
+        _thread.interrupt();
+        try { _thread.join(5000L); } catch (final InterruptedException exception) { }
+        _thread = null;
+    }
+}
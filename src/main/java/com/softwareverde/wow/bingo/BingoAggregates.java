@@ -0,0 +1,128 @@
+package com.softwareverde.wow.bingo;
+
+import com.softwareverde.json.Json;
+import com.softwareverde.json.Jsonable;
+import com.softwareverde.util.Util;
+
+/**
+ * Maintains the paid player count, total pot, winner count, and per-winner payouts as paid and winner events arrive,
+ *  so that none of them require a pass over the players.
+ *  Events must be delivered from the thread that owns the BingoState, but the current Totals may be read from any thread.
+ */
+public class BingoAggregates {
+    /**
+     * An immutable, internally-consistent view of the aggregates.
+     */
+    public static class Totals implements Jsonable {
+        protected final Integer _paidPlayerCount;
+        protected final Long _totalPot;
+        protected final long[] _payouts; // The payout of each winner, in order of their bingo.
+        protected final Long _jackpot;
+
+        protected Totals(final Integer paidPlayerCount, final Long totalPot, final long[] payouts) {
+            _paidPlayerCount = paidPlayerCount;
+            _totalPot = totalPot;
+            _payouts = payouts;
+            _jackpot = BingoAggregates.calculatePayout(totalPot, payouts.length);
+        }
+
+        public Integer getPaidPlayerCount() {
+            return _paidPlayerCount;
+        }
+
+        public Long getTotalPot() {
+            return _totalPot;
+        }
+
+        public Integer getWinnerCount() {
+            return _payouts.length;
+        }
+
+        /**
+         * Returns the payout of the winner at winnerIndex; indexes beyond the current winners return what that winner would be paid.
+         */
+        public Long getPayout(final Integer winnerIndex) {
+            if (winnerIndex < _payouts.length) {
+                return _payouts[winnerIndex];
+            }
+            return BingoAggregates.calculatePayout(_totalPot, winnerIndex);
+        }
+
+        /**
+         * Returns the amount the next winner would be paid.
+         */
+        public Long getJackpot() {
+            return _jackpot;
+        }
+
+        @Override
+        public Json toJson() {
+            final Json payoutsJson = new Json(true);
+            for (final long payout : _payouts) {
+                payoutsJson.add(payout);
+            }
+
+            final Json json = new Json(false);
+            json.put("paidPlayerCount", _paidPlayerCount);
+            json.put("totalPot", _totalPot);
+            json.put("winnerCount", _payouts.length);
+            json.put("payouts", payoutsJson);
+            json.put("jackpot", _jackpot);
+            return json;
+        }
+    }
+
+    /**
+     * Each winner is paid half of what remains of the pot.
+     */
+    public static Long calculatePayout(final Long totalPot, final Integer winnerIndex) {
+        final double divisor = Math.pow(2.0, (winnerIndex + 1));
+        return (long) (totalPot / divisor);
+    }
+
+    protected final Integer _ticketCost;
+    protected int _paidPlayerCount = 0;
+    protected volatile Totals _totals;
+
+    protected void _publish(final long[] payouts) {
+        final long totalPot = (((long) _ticketCost) * _paidPlayerCount);
+        _totals = new Totals(_paidPlayerCount, totalPot, payouts);
+    }
+
+    public BingoAggregates(final Integer ticketCost) {
+        _ticketCost = ticketCost;
+        _publish(new long[0]);
+    }
+
+    public void onPaidChanged(final Boolean wasPaid, final Boolean isPaid) {
+        if (Util.areEqual(wasPaid, isPaid)) { return; }
+
+        _paidPlayerCount += (isPaid ? 1 : -1);
+
+        // Every payout is a fraction of the total pot, so they are all recalculated; there are only ever a handful of winners.
+        final long totalPot = (((long) _ticketCost) * _paidPlayerCount);
+        final int winnerCount = _totals.getWinnerCount();
+        final long[] payouts = new long[winnerCount];
+        for (int i = 0; i < winnerCount; ++i) {
+            payouts[i] = BingoAggregates.calculatePayout(totalPot, i);
+        }
+        _publish(payouts);
+    }
+
+    public void onWinnerAdded() {
+        final Totals totals = _totals;
+        final int winnerCount = totals.getWinnerCount();
+
+        final long[] payouts = new long[winnerCount + 1];
+        System.arraycopy(totals._payouts, 0, payouts, 0, winnerCount);
+        payouts[winnerCount] = totals.getJackpot();
+        _publish(payouts);
+    }
+
+    /**
+     * May be invoked from any thread.
+     */
+    public Totals getTotals() {
+        return _totals;
+    }
+}
@@ -2,114 +2,190 @@ package com.softwareverde.wow.bingo;
 
 import com.softwareverde.json.Json;
 import com.softwareverde.json.Jsonable;
-import com.softwareverde.util.Tuple;
 
-import java.util.HashSet;
 import java.util.Random;
 
 public class BingoGame implements Jsonable {
     public static final Integer BOARD_WIDTH = 5;
+    public static final Integer BOARD_SIZE = (BOARD_WIDTH * BOARD_WIDTH);
+
+    /**
+     * Each mask has a bit set for every cell of a single row, column, or diagonal.
+     *  Cell (x, y) is represented by bit (x + (y * BOARD_WIDTH)).
+     */
+    protected static final int[] LINE_MASKS;
+    static {
+        final int boardWidth = BOARD_WIDTH;
+        LINE_MASKS = new int[(boardWidth * 2) + 2];
 
-    protected final Long _seed;
-    protected final BingoBoard<Integer> _boardLayout;
-    protected final BingoBoard<Boolean> _boardValues;
-
-    protected int _getBingoCount() {
-        int bingoCount = 0;
-
-        { // Check for horizontal bingo...
-            for (int y = 0; y < BOARD_WIDTH; ++y) {
-                int setCount = 0;
-                for (int x = 0; x < BOARD_WIDTH; ++x) {
-                    final Boolean isSet = _boardValues.getValue(x, y);
-                    if (! isSet) { break; }
-
-                    setCount += 1;
-                }
-                if (setCount >= BOARD_WIDTH) {
-                    bingoCount += 1;
-                }
+        int lineIndex = 0;
+        for (int y = 0; y < boardWidth; ++y) { // Horizontal...
+            int mask = 0;
+            for (int x = 0; x < boardWidth; ++x) {
+                mask |= (1 << (x + (y * boardWidth)));
             }
+            LINE_MASKS[lineIndex] = mask;
+            lineIndex += 1;
         }
 
-        { // Check for vertical bingo...
-            for (int x = 0; x < BOARD_WIDTH; ++x) {
-                int setCount = 0;
-                for (int y = 0; y < BOARD_WIDTH; ++y) {
-                    final Boolean isSet = _boardValues.getValue(x, y);
-                    if (! isSet) { break; }
-
-                    setCount += 1;
-                }
-                if (setCount >= BOARD_WIDTH) {
-                    bingoCount += 1;
-                }
+        for (int x = 0; x < boardWidth; ++x) { // Vertical...
+            int mask = 0;
+            for (int y = 0; y < boardWidth; ++y) {
+                mask |= (1 << (x + (y * boardWidth)));
             }
+            LINE_MASKS[lineIndex] = mask;
+            lineIndex += 1;
         }
 
-        { // Check for top-left diagonal bingo...
-            int setCount = 0;
-            for (int i = 0; i < BOARD_WIDTH; ++i) {
-                final Boolean isSet = _boardValues.getValue(i, i);
-                if (! isSet) { break; }
-
-                setCount += 1;
-            }
-            if (setCount >= BOARD_WIDTH) {
-                bingoCount += 1;
+        { // Top-left diagonal...
+            int mask = 0;
+            for (int i = 0; i < boardWidth; ++i) {
+                mask |= (1 << (i + (i * boardWidth)));
             }
+            LINE_MASKS[lineIndex] = mask;
+            lineIndex += 1;
         }
 
-        { // Check for top-right diagonal bingo...
-            int setCount = 0;
-            for (int i = BOARD_WIDTH; i > 0; --i) {
+        { // Top-right diagonal...
+            int mask = 0;
+            for (int i = boardWidth; i > 0; --i) {
                 final int x = (i - 1);              // ..., 3, 2, 1, 0
-                final int y = (BOARD_WIDTH - i);    // 0, 1, 2, 3, ...
-                final Boolean isSet = _boardValues.getValue(x, y);
-                if (! isSet) { break; }
-
-                setCount += 1;
-            }
-            if (setCount >= BOARD_WIDTH) {
-                bingoCount += 1;
+                final int y = (boardWidth - i);     // 0, 1, 2, 3, ...
+                mask |= (1 << (x + (y * boardWidth)));
             }
+            LINE_MASKS[lineIndex] = mask;
         }
-
-        return bingoCount;
     }
 
-    public BingoGame(final Integer uniqueSquareCount, final Long seed) {
-        _seed = seed;
-
-        final int boardWidth = BOARD_WIDTH;
-        _boardLayout = new BingoBoard<>(boardWidth, 0);
-        _boardValues = new BingoBoard<>(boardWidth, false);
-        final int boardSize = _boardValues.getSize();
-
+    /**
+     * Returns the label indexes of a board generated from the seed, indexed by linear cell index.
+     *  Labels are drawn by rejection sampling so that a seed always produces the same board it always has; the consumed
+     *  labels are tracked within a primitive bitset so that generation allocates only the Random and the returned array.
+     */
+    public static int[] generateLayout(final int uniqueSquareCount, final long seed) {
+        final int boardSize = BOARD_SIZE;
         if (uniqueSquareCount < boardSize) {
             throw new RuntimeException("Unable to create board of size " + boardSize + " with only " + uniqueSquareCount + " defined squares.");
         }
 
-        final HashSet<Integer> consumedSquares = new HashSet<>(boardSize);
+        final int[] layout = new int[boardSize];
+        final long[] consumedSquares = new long[(uniqueSquareCount + 63) / 64];
         final Random random = new Random(seed);
 
         for (int i = 0; i < boardSize; ++i) {
-            Integer index;
+            int index;
+            long bit;
             do {
                 index = (Math.abs(random.nextInt()) % uniqueSquareCount);
-            } while(consumedSquares.contains(index));
-            consumedSquares.add(index);
+                bit = (1L << (index & 63));
+            } while ((consumedSquares[index >>> 6] & bit) != 0L);
+            consumedSquares[index >>> 6] |= bit;
+
+            layout[i] = index;
+        }
+
+        return layout;
+    }
+
+    public static int getBingoCount(final int marks) {
+        int bingoCount = 0;
+        for (final int lineMask : LINE_MASKS) {
+            if ((marks & lineMask) == lineMask) {
+                bingoCount += 1;
+            }
+        }
+        return bingoCount;
+    }
+
+    protected final Integer _playerId;
+    protected final Long _seed;
+    protected final int[] _boardLayout;
+    protected volatile int _marks = 0; // Written only by the BingoStateEventLoop, but may be read from any thread.
+
+    protected int _getBingoCount() {
+        return BingoGame.getBingoCount(_marks);
+    }
 
-            final Tuple<Integer, Integer> position = BingoBoard.convertLinearIndexToPosition(i, boardWidth);
-            _boardLayout.setValue(position, index);
+    protected int _getCellIndex(final int squareValue) {
+        for (int i = 0; i < _boardLayout.length; ++i) {
+            if (_boardLayout[i] == squareValue) {
+                return i;
+            }
         }
+        return -1;
+    }
+
+    public BingoGame(final Integer playerId, final Integer uniqueSquareCount, final Long seed) {
+        this(playerId, BingoGame.generateLayout(uniqueSquareCount, seed), seed);
+    }
+
+    /**
+     * Creates a BingoGame from a layout previously generated by BingoGame::generateLayout with the same seed.
+     */
+    public BingoGame(final Integer playerId, final int[] boardLayout, final Long seed) {
+        if (boardLayout.length != BOARD_SIZE) {
+            throw new RuntimeException("Invalid board layout size: " + boardLayout.length);
+        }
+
+        _playerId = playerId;
+        _seed = seed;
+        _boardLayout = boardLayout;
     }
 
     public void updateBoard(final Integer squareValue, final Boolean isMarked) {
-        final Tuple<Integer, Integer> position = _boardLayout.getPositionOf(squareValue);
-        if (position == null) { return; }
+        final int cellIndex = _getCellIndex(squareValue);
+        if (cellIndex < 0) { return; }
+
+        this.setCellMarked(cellIndex, isMarked);
+    }
+
+    /**
+     * Sets the mark of the cell at the linear index, (x + (y * BOARD_WIDTH)).
+     */
+    public void setCellMarked(final int cellIndex, final boolean isMarked) {
+        final int cellMask = (1 << cellIndex);
+        if (isMarked) {
+            _marks = (_marks | cellMask);
+        }
+        else {
+            _marks = (_marks & (~ cellMask));
+        }
+    }
+
+    /**
+     * Sets every cell's mark at once from a bitmask; cell (x, y) is represented by bit (x + (y * BOARD_WIDTH)).
+     */
+    public void setMarks(final int marks) {
+        _marks = marks;
+    }
+
+    public Boolean isCellMarked(final int cellIndex) {
+        return ((_marks & (1 << cellIndex)) != 0);
+    }
+
+    /**
+     * Returns the label index displayed at the linear index, (x + (y * BOARD_WIDTH)).
+     */
+    public int getLabelIndex(final int cellIndex) {
+        return _boardLayout[cellIndex];
+    }
+
+    /**
+     * Returns the marked cells as a bitmask; cell (x, y) is represented by bit (x + (y * BOARD_WIDTH)).
+     */
+    public int getMarks() {
+        return _marks;
+    }
 
-        _boardValues.setValue(position, isMarked);
+    /**
+     * Returns the PlayerRegistry id of the player that owns this board.
+     */
+    public Integer getPlayerId() {
+        return _playerId;
+    }
+
+    public Long getSeed() {
+        return _seed;
     }
 
     public Boolean isABingo() {
@@ -122,10 +198,42 @@ public class BingoGame implements Jsonable {
 
     @Override
     public Json toJson() {
+        return this.toJson(_marks);
+    }
+
+    /**
+     * Serializes the board as if its cells were marked as in the bitmask; used to serialize a consistent copy of a board that is concurrently being marked.
+     */
+    public Json toJson(final int marks) {
+        // NOTE: The layout and marks are each serialized as {"width": ..., "values": [...]}, with values in linear cell order; the client relies on this format.
+        final Json layoutJson;
+        {
+            final Json values = new Json(true);
+            for (final int labelIndex : _boardLayout) {
+                values.add(labelIndex);
+            }
+
+            layoutJson = new Json(false);
+            layoutJson.put("width", BOARD_WIDTH);
+            layoutJson.put("values", values);
+        }
+
+        final Json marksJson;
+        {
+            final Json values = new Json(true);
+            for (int i = 0; i < _boardLayout.length; ++i) {
+                values.add((marks & (1 << i)) != 0);
+            }
+
+            marksJson = new Json(false);
+            marksJson.put("width", BOARD_WIDTH);
+            marksJson.put("values", values);
+        }
+
         final Json json = new Json(false);
         json.put("seed", _seed);
-        json.put("layout", _boardLayout);
-        json.put("marks", _boardValues);
+        json.put("layout", layoutJson);
+        json.put("marks", marksJson);
         return json;
     }
 }
@@ -0,0 +1,407 @@
+package com.softwareverde.wow.bingo;
+
+import com.softwareverde.logging.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.zip.CRC32;
+
+/**
+ * A durable, append-only record of every join, mark, and paid change applied to a BingoState.
+ *  Records are written into a memory-mapped region of the journal file, so an append is a copy into memory and never waits on the disk;
+ *  the region is forced to disk by a separate flush thread every flush interval, so a crash loses at most that interval of changes.
+ *  Appends must only be made from the thread that owns the BingoState.
+ *
+ *  The file begins with a header (magic, format version, seed, ticket cost, label count, journal id) followed by records of the form:
+ *  [type:1][payloadLength:2][payload][crc32(type, payloadLength, payload):4].  Records never span the fixed-size mapped regions.
+ *  A zeroed type marks the end of the journal; a record with an invalid checksum is treated as a torn write and is overwritten by the next append.
+ */
+public class BingoJournal implements BingoState.ChangeListener {
+    public static class Header {
+        public final Long seed;
+        public final Integer ticketCost;
+        public final Integer labelCount;
+
+        public Header(final Long seed, final Integer ticketCost, final Integer labelCount) {
+            this.seed = seed;
+            this.ticketCost = ticketCost;
+            this.labelCount = labelCount;
+        }
+    }
+
+    protected static final int MAGIC = 0x424E474A; // "BNGJ"
+    protected static final int FORMAT_VERSION = 1;
+    protected static final int HEADER_BYTE_COUNT = (4 + 4 + 8 + 4 + 4 + 8);
+    protected static final int RECORD_OVERHEAD_BYTE_COUNT = (1 + 2 + 4);
+    protected static final int REGION_BYTE_COUNT = (4 * 1024 * 1024);
+    protected static final Long DEFAULT_FLUSH_INTERVAL_MS = 50L;
+
+    protected static final byte RECORD_TYPE_END = 0;
+    protected static final byte RECORD_TYPE_JOIN = 1;
+    protected static final byte RECORD_TYPE_MARK = 2;
+    protected static final byte RECORD_TYPE_PAID = 3;
+    protected static final byte RECORD_TYPE_NEXT_REGION = (byte) 0xFF; // The remainder of the region is unused; records continue at the next region.
+
+    /**
+     * Returns the header of the journal file, or null if the file does not exist or is not a journal.
+     */
+    public static Header readHeader(final File file) {
+        if ( (! file.exists()) || (file.length() < HEADER_BYTE_COUNT) ) { return null; }
+
+        try (final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            final int magic = randomAccessFile.readInt();
+            final int formatVersion = randomAccessFile.readInt();
+            if ( (magic != MAGIC) || (formatVersion != FORMAT_VERSION) ) { return null; }
+
+            final long seed = randomAccessFile.readLong();
+            final int ticketCost = randomAccessFile.readInt();
+            final int labelCount = randomAccessFile.readInt();
+            return new Header(seed, ticketCost, labelCount);
+        }
+        catch (final IOException exception) {
+            Logger.warn("Unable to read journal header: " + file.getPath(), exception);
+            return null;
+        }
+    }
+
+    protected static long _calculateChecksum(final ByteBuffer byteBuffer, final int recordPosition, final int payloadByteCount) {
+        final CRC32 crc32 = new CRC32();
+        for (int i = 0; i < (1 + 2 + payloadByteCount); ++i) {
+            crc32.update(byteBuffer.get(recordPosition + i));
+        }
+        return crc32.getValue();
+    }
+
+    protected final File _file;
+    protected final Header _header;
+    protected final RandomAccessFile _randomAccessFile;
+    protected final FileChannel _fileChannel;
+    protected final Object _mutex = new Object();
+    protected final Object _flushMutex = new Object(); // Held while forcing, so a flush never returns while another flush's records are still being forced.
+    protected final Long _flushIntervalMs;
+    protected final Thread _flushThread;
+    protected final Long _journalId; // Randomly assigned when the journal is created; distinguishes a recreated journal from its predecessor.
+
+    protected MappedByteBuffer _region;
+    protected MappedByteBuffer _retiredRegion; // A filled region that has not yet been forced to disk.
+    protected long _regionFilePosition;
+    protected long _recordCount = 0L;
+    protected volatile Boolean _isDirty = false;
+
+    protected void _mapRegion(final long filePosition) throws IOException {
+        _region = _fileChannel.map(FileChannel.MapMode.READ_WRITE, filePosition, REGION_BYTE_COUNT);
+        _regionFilePosition = filePosition;
+    }
+
+    /**
+     * Writes the header of a record of the type with a payload of payloadByteCount bytes.
+     *  Returns the buffer positioned at the start of the payload; the caller must populate the payload and then invoke BingoJournal::_commitRecord.
+     *  If the record does not fit within the current region, the region is terminated and the next region is mapped; the terminated region
+     *  is forced to disk by the flush thread rather than the appending thread.
+     */
+    protected MappedByteBuffer _beginRecord(final byte recordType, final int payloadByteCount) {
+        final int recordByteCount = (RECORD_OVERHEAD_BYTE_COUNT + payloadByteCount);
+        if (_region.remaining() < (recordByteCount + 1)) { // Reserve a byte for the trailing end marker...
+            _region.put(_region.position(), RECORD_TYPE_NEXT_REGION);
+            _retiredRegion = _region;
+
+            try {
+                _mapRegion(_regionFilePosition + REGION_BYTE_COUNT);
+            }
+            catch (final IOException exception) {
+                throw new RuntimeException("Unable to extend journal: " + _file.getPath(), exception);
+            }
+        }
+
+        _region.put(recordType);
+        _region.putShort((short) payloadByteCount);
+        return _region;
+    }
+
+    protected void _commitRecord(final int payloadByteCount) {
+        final int recordPosition = (_region.position() - (1 + 2 + payloadByteCount));
+        final long checksum = _calculateChecksum(_region, recordPosition, payloadByteCount);
+        _region.putInt((int) checksum);
+        _region.put(_region.position(), RECORD_TYPE_END);
+
+        _recordCount += 1L;
+        _isDirty = true;
+    }
+
+    protected void _flush() {
+        synchronized (_flushMutex) {
+            final MappedByteBuffer retiredRegion;
+            final MappedByteBuffer region;
+            synchronized (_mutex) {
+                if (! _isDirty) { return; }
+                _isDirty = false;
+
+                retiredRegion = _retiredRegion;
+                _retiredRegion = null;
+                region = _region;
+            }
+
+            if (retiredRegion != null) {
+                retiredRegion.force();
+            }
+            region.force();
+        }
+    }
+
+    /**
+     * Opens the journal file, creating it with the header if it does not exist.
+     *  If the file already exists, its header must match the provided header; the header of an existing journal may be read via BingoJournal::readHeader.
+     */
+    public BingoJournal(final File file, final Header header) throws IOException {
+        this(file, header, DEFAULT_FLUSH_INTERVAL_MS);
+    }
+
+    public BingoJournal(final File file, final Header header, final Long flushIntervalMs) throws IOException {
+        final Header existingHeader = BingoJournal.readHeader(file);
+        if (existingHeader != null) {
+            final boolean headerMatches = ( existingHeader.seed.equals(header.seed) && existingHeader.ticketCost.equals(header.ticketCost) && existingHeader.labelCount.equals(header.labelCount) );
+            if (! headerMatches) {
+                throw new IOException("Journal does not match the current game: " + file.getPath());
+            }
+        }
+
+        _file = file;
+        _header = header;
+        _flushIntervalMs = flushIntervalMs;
+        _randomAccessFile = new RandomAccessFile(file, "rw");
+        _fileChannel = _randomAccessFile.getChannel();
+
+        if (existingHeader == null) {
+            final ByteBuffer headerBuffer = ByteBuffer.allocate(HEADER_BYTE_COUNT);
+            headerBuffer.putInt(MAGIC);
+            headerBuffer.putInt(FORMAT_VERSION);
+            headerBuffer.putLong(header.seed);
+            headerBuffer.putInt(header.ticketCost);
+            headerBuffer.putInt(header.labelCount);
+            headerBuffer.putLong(new SecureRandom().nextLong());
+            headerBuffer.flip();
+
+            _randomAccessFile.setLength(0L);
+            _fileChannel.write(headerBuffer, 0L);
+            _fileChannel.force(true);
+        }
+
+        {
+            final ByteBuffer journalIdBuffer = ByteBuffer.allocate(8);
+            _fileChannel.read(journalIdBuffer, (HEADER_BYTE_COUNT - 8));
+            _journalId = journalIdBuffer.getLong(0);
+        }
+
+        _mapRegion(HEADER_BYTE_COUNT);
+
+        _flushThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                final Thread thread = Thread.currentThread();
+                while (! thread.isInterrupted()) {
+                    try { Thread.sleep(_flushIntervalMs); }
+                    catch (final InterruptedException exception) { break; }
+
+                    _flush();
+                }
+            }
+        });
+        _flushThread.setName("BingoJournal Flush Thread");
+        _flushThread.setDaemon(true);
+        _flushThread.setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+            @Override
+            public void uncaughtException(final Thread thread, final Throwable exception) {
+                Logger.error(exception);
+            }
+        });
+    }
+
+    public Header getHeader() {
+        return _header;
+    }
+
+    /**
+     * Applies every valid record within the journal to the BingoState, and positions the journal to append after the last valid record.
+     *  Must be invoked before any record is appended, and before this journal is added to the BingoState via BingoState::addChangeListener.
+     *  Returns the number of records replayed.
+     */
+    public Long replay(final BingoState bingoState) throws IOException {
+        return this.replay(bingoState, (long) HEADER_BYTE_COUNT);
+    }
+
+    /**
+     * Applies every valid record at or after the journal position, as returned by BingoJournal::getPosition, to the BingoState.
+     *  Used to apply the tail of the journal to a BingoState restored from a BingoSnapshot.
+     */
+    public Long replay(final BingoState bingoState, final Long position) throws IOException {
+        if (position < HEADER_BYTE_COUNT) {
+            throw new IOException("Invalid journal position: " + position);
+        }
+
+        final long regionIndex = ((position - HEADER_BYTE_COUNT) / REGION_BYTE_COUNT);
+        _mapRegion(HEADER_BYTE_COUNT + (regionIndex * REGION_BYTE_COUNT));
+        _region.position((int) (position - _regionFilePosition));
+
+        long recordCount = 0L;
+        while (true) {
+            final int recordPosition = _region.position();
+            final byte recordType = _region.get(recordPosition);
+            if (recordType == RECORD_TYPE_END) { break; }
+            if (recordType == RECORD_TYPE_NEXT_REGION) {
+                _mapRegion(_regionFilePosition + REGION_BYTE_COUNT);
+                continue;
+            }
+
+            final int payloadByteCount = (_region.getShort(recordPosition + 1) & 0xFFFF);
+            if (_region.remaining() < (RECORD_OVERHEAD_BYTE_COUNT + payloadByteCount + 1)) { break; }
+
+            final int storedChecksum = _region.getInt(recordPosition + 1 + 2 + payloadByteCount);
+            final long checksum = _calculateChecksum(_region, recordPosition, payloadByteCount);
+            if (storedChecksum != ((int) checksum)) {
+                Logger.info("Discarding torn journal record at " + (_regionFilePosition + recordPosition) + ".");
+                break;
+            }
+
+            final int payloadPosition = (recordPosition + 1 + 2);
+            switch (recordType) {
+                case RECORD_TYPE_JOIN: {
+                    final byte[] nameBytes = new byte[payloadByteCount];
+                    for (int i = 0; i < payloadByteCount; ++i) {
+                        nameBytes[i] = _region.get(payloadPosition + i);
+                    }
+                    bingoState.newBingoGame(new String(nameBytes, StandardCharsets.UTF_8));
+                } break;
+
+                case RECORD_TYPE_MARK: {
+                    final int labelIndex = _region.getInt(payloadPosition);
+                    final boolean isMarked = (_region.get(payloadPosition + 4) != 0);
+                    bingoState.markLabel(labelIndex, isMarked);
+                } break;
+
+                case RECORD_TYPE_PAID: {
+                    final int playerId = _region.getInt(payloadPosition);
+                    final boolean hasPaid = (_region.get(payloadPosition + 4) != 0);
+                    bingoState.setHasPaid(playerId, hasPaid);
+                } break;
+
+                default: {
+                    Logger.info("Discarding unknown journal record type " + recordType + ".");
+                } break;
+            }
+
+            _region.position(recordPosition + RECORD_OVERHEAD_BYTE_COUNT + payloadByteCount);
+            recordCount += 1L;
+        }
+
+        _recordCount += recordCount;
+        return recordCount;
+    }
+
+    /**
+     * Throws an IllegalArgumentException if the name exceeds BingoState.MAX_PLAYER_NAME_BYTE_COUNT, rather than journaling a truncated name,
+     *  which would be replayed as a different player with a different board.
+     */
+    public void appendJoin(final String name) {
+        final byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        if (nameBytes.length > BingoState.MAX_PLAYER_NAME_BYTE_COUNT) {
+            throw new IllegalArgumentException("Player name of " + nameBytes.length + " bytes exceeds the limit of " + BingoState.MAX_PLAYER_NAME_BYTE_COUNT + " bytes.");
+        }
+        final int payloadByteCount = nameBytes.length;
+
+        synchronized (_mutex) {
+            final MappedByteBuffer region = _beginRecord(RECORD_TYPE_JOIN, payloadByteCount);
+            region.put(nameBytes, 0, payloadByteCount);
+            _commitRecord(payloadByteCount);
+        }
+    }
+
+    public void appendMark(final Integer labelIndex, final Boolean isMarked) {
+        synchronized (_mutex) {
+            final MappedByteBuffer region = _beginRecord(RECORD_TYPE_MARK, 5);
+            region.putInt(labelIndex);
+            region.put((byte) (isMarked ? 1 : 0));
+            _commitRecord(5);
+        }
+    }
+
+    public void appendPaid(final Integer playerId, final Boolean hasPaid) {
+        synchronized (_mutex) {
+            final MappedByteBuffer region = _beginRecord(RECORD_TYPE_PAID, 5);
+            region.putInt(playerId);
+            region.put((byte) (hasPaid ? 1 : 0));
+            _commitRecord(5);
+        }
+    }
+
+    @Override
+    public void onPlayerJoined(final String playerName) {
+        this.appendJoin(playerName);
+    }
+
+    @Override
+    public void onLabelMarked(final Integer labelIndex, final Boolean isMarked) {
+        this.appendMark(labelIndex, isMarked);
+    }
+
+    @Override
+    public void onPaidChanged(final Integer playerId, final Boolean hasPaid) {
+        this.appendPaid(playerId, hasPaid);
+    }
+
+    @Override
+    public void onWinnerAdded(final Integer playerId, final Integer winnerIndex) {
+        // Nothing to record; winners are derived from the marks when the journal is replayed.
+    }
+
+    public Long getJournalId() {
+        return _journalId;
+    }
+
+    /**
+     * Returns the file position at which the next record will be appended.
+     *  Must only be invoked from the thread that appends to the journal.
+     */
+    public Long getPosition() {
+        return (_regionFilePosition + _region.position());
+    }
+
+    public Long getRecordCount() {
+        return _recordCount;
+    }
+
+    public void start() {
+        _flushThread.start();
+    }
+
+    /**
+     * Forces every record appended so far to disk, without waiting for the flush thread; returns once they are durable.
+     *  May be invoked from any thread.
+     */
+    public void force() {
+        _flush();
+    }
+
+    /**
+     * Forces any unflushed records to disk and closes the journal file.
+     */
+    public void stop() {
+        _flushThread.interrupt();
+        try { _flushThread.join(5000L); } catch (final InterruptedException exception) { }
+
+        _flush();
+
+        try {
+            _fileChannel.close();
+            _randomAccessFile.close();
+        }
+        catch (final IOException exception) {
+            Logger.debug(exception);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.softwareverde.wow.bingo;
+
+import com.softwareverde.json.Json;
+import com.softwareverde.json.Jsonable;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The server's runtime metrics: per-query latency, broadcast timing, BingoStateEventLoop queueing, connections, heartbeats, and outbound traffic.
+ *  Every metric may be recorded and read from any thread without locking.
+ */
+public class BingoMetrics implements Jsonable {
+    protected final ConcurrentHashMap<String, LatencyHistogram> _queryHistograms = new ConcurrentHashMap<>();
+    protected final BroadcastStatistics _broadcastStatistics = new BroadcastStatistics();
+    protected final LatencyHistogram _eventLoopQueueWaitHistogram = new LatencyHistogram();
+    protected final LatencyHistogram _eventLoopExecutionHistogram = new LatencyHistogram();
+    protected final LatencyHistogram _pongRoundTripHistogram = new LatencyHistogram();
+    protected final AtomicLong _connectedWebSocketCount = new AtomicLong(0L);
+    protected final AtomicLong _evictedWebSocketCount = new AtomicLong(0L);
+    protected final AtomicLong _outboundMessageCount = new AtomicLong(0L);
+    protected final AtomicLong _outboundByteCount = new AtomicLong(0L);
+    protected final AtomicLong _droppedMessageCount = new AtomicLong(0L);
+    protected final AtomicLong _gameStateCacheHitCount = new AtomicLong(0L);
+    protected final AtomicLong _gameStateCacheMissCount = new AtomicLong(0L);
+
+    /**
+     * Returns the histogram of the time taken to handle the query, creating it if necessary.
+     */
+    public LatencyHistogram getQueryHistogram(final String query) {
+        final LatencyHistogram histogram = _queryHistograms.get(query);
+        if (histogram != null) { return histogram; }
+
+        final LatencyHistogram newHistogram = new LatencyHistogram();
+        final LatencyHistogram existingHistogram = _queryHistograms.putIfAbsent(query, newHistogram);
+        return (existingHistogram != null ? existingHistogram : newHistogram);
+    }
+
+    public BroadcastStatistics getBroadcastStatistics() {
+        return _broadcastStatistics;
+    }
+
+    /**
+     * The time commands wait within the BingoStateEventLoop's queue before being applied.
+     */
+    public LatencyHistogram getEventLoopQueueWaitHistogram() {
+        return _eventLoopQueueWaitHistogram;
+    }
+
+    /**
+     * The time taken to apply a command, including its callback, on the BingoStateEventLoop.
+     */
+    public LatencyHistogram getEventLoopExecutionHistogram() {
+        return _eventLoopExecutionHistogram;
+    }
+
+    /**
+     * The time between a ping being sent to a WebSocket and its pong being received.
+     */
+    public LatencyHistogram getPongRoundTripHistogram() {
+        return _pongRoundTripHistogram;
+    }
+
+    public void onWebSocketConnected() {
+        _connectedWebSocketCount.incrementAndGet();
+    }
+
+    public void onWebSocketDisconnected() {
+        _connectedWebSocketCount.decrementAndGet();
+    }
+
+    /**
+     * Records a WebSocket that was disconnected because it stopped answering pings.
+     */
+    public void onWebSocketEvicted() {
+        _evictedWebSocketCount.incrementAndGet();
+    }
+
+    /**
+     * Records a message sent to a WebSocket; byteCount is the length of the message payload.
+     */
+    public void onMessageSent(final Integer byteCount) {
+        _outboundMessageCount.incrementAndGet();
+        _outboundByteCount.addAndGet(byteCount);
+    }
+
+    /**
+     * Records a queued message that was discarded before being sent, either because it was stale or because its WebSocket was disconnected.
+     */
+    public void onMessageDropped() {
+        _droppedMessageCount.incrementAndGet();
+    }
+
+    public void onGameStateCacheHit() {
+        _gameStateCacheHitCount.incrementAndGet();
+    }
+
+    public void onGameStateCacheMiss() {
+        _gameStateCacheMissCount.incrementAndGet();
+    }
+
+    @Override
+    public Json toJson() {
+        final Json queriesJson = new Json(false);
+        for (final Map.Entry<String, LatencyHistogram> entry : _queryHistograms.entrySet()) {
+            queriesJson.put(entry.getKey(), entry.getValue());
+        }
+
+        final Json eventLoopJson = new Json(false);
+        eventLoopJson.put("queueWaitNanoseconds", _eventLoopQueueWaitHistogram);
+        eventLoopJson.put("executionNanoseconds", _eventLoopExecutionHistogram);
+
+        final Json gameStateCacheJson = new Json(false);
+        gameStateCacheJson.put("hits", _gameStateCacheHitCount.get());
+        gameStateCacheJson.put("misses", _gameStateCacheMissCount.get());
+
+        final Json heartbeatJson = new Json(false);
+        heartbeatJson.put("pongRoundTripNanoseconds", _pongRoundTripHistogram);
+        heartbeatJson.put("evictedWebSockets", _evictedWebSocketCount.get());
+
+        final Json json = new Json(false);
+        json.put("queryNanoseconds", queriesJson);
+        json.put("broadcasts", _broadcastStatistics);
+        json.put("eventLoop", eventLoopJson);
+        json.put("connectedWebSockets", _connectedWebSocketCount.get());
+        json.put("heartbeat", heartbeatJson);
+        json.put("outboundMessages", _outboundMessageCount.get());
+        json.put("outboundBytes", _outboundByteCount.get());
+        json.put("droppedMessages", _droppedMessageCount.get());
+        json.put("gameStateCache", gameStateCacheJson);
+        return json;
+    }
+}
@@ -0,0 +1,324 @@
+package com.softwareverde.wow.bingo;
+
+import com.softwareverde.concurrent.threadpool.CachedThreadPool;
+import com.softwareverde.constable.list.List;
+import com.softwareverde.logging.Logger;
+import com.softwareverde.util.Util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+
+/**
+ * A single game: its BingoState, labels, admin password, and WebSocketApi, along with its optional journal, snapshots, audit log, and roster.
+ *  Each room's BingoStateEventLoop runs on the PartitionedExecutor.Partition the room is pinned to, so rooms never share state or locks.
+ *  A room is either owned by this node, in which case its changes are streamed to edge nodes via its ReplicationPublisher,
+ *  or is a read-only replica of a room owned by a primary node, kept up to date by its ReplicaClient.
+ */
+public class BingoRoom {
+    public static final String DEFAULT_ROOM_ID = "default";
+    public static final Long DEFAULT_SNAPSHOT_INTERVAL_MS = 60000L;
+    public static final Long ROSTER_REGISTRATION_TIMEOUT_MS = 300000L; // Generous enough for rosters of millions of players.
+
+    protected static final Pattern ROOM_ID_PATTERN = Pattern.compile("[a-z0-9_-]{1,64}");
+
+    /**
+     * Room ids are used within URL paths and file paths, so they are restricted to lowercase letters, digits, underscores, and hyphens.
+     */
+    public static Boolean isValidRoomId(final String roomId) {
+        if (roomId == null) { return false; }
+        return ROOM_ID_PATTERN.matcher(roomId).matches();
+    }
+
+    protected final String _roomId;
+    protected final BingoState _bingoState;
+    protected final BingoStateEventLoop _bingoStateEventLoop;
+    protected final WebSocketApi _webSocketApi;
+    protected final List<String> _roster;
+    protected final ReplicationPublisher _replicationPublisher;
+    protected final ReplicaClient _replicaClient;
+    protected BingoJournal _journal;
+    protected File _snapshotFile;
+    protected File _auditLogFile;
+    protected AuditLog _auditLog;
+    protected Long _snapshotIntervalMs = DEFAULT_SNAPSHOT_INTERVAL_MS;
+    protected volatile Long _snapshotJournalPosition = null; // The journal position of the most recently written snapshot.
+
+    protected final Thread _snapshotThread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+            final Thread thread = Thread.currentThread();
+            while (! thread.isInterrupted()) {
+                try { Thread.sleep(_snapshotIntervalMs); }
+                catch (final InterruptedException exception) { break; }
+
+                _writeSnapshot();
+            }
+        }
+    });
+
+    /**
+     * Restores the BingoState from the newest snapshot, if any, and then replays the tail of the journal after the snapshot.
+     */
+    protected void _recoverState() {
+        if (_journal == null) { return; }
+
+        final long startTime = System.currentTimeMillis();
+        try {
+            final BingoSnapshot snapshot = (_snapshotFile != null ? BingoSnapshot.read(_snapshotFile) : null);
+            final Long recordCount;
+            if ( (snapshot != null) && snapshot.isFromJournal(_journal) ) {
+                _bingoState.restore(snapshot);
+                recordCount = _journal.replay(_bingoState, snapshot.getJournalPosition());
+                _snapshotJournalPosition = snapshot.getJournalPosition();
+                Logger.info("[" + _roomId + ": Restored snapshot of " + snapshot.getPlayerNames().getCount() + " players]");
+            }
+            else {
+                recordCount = _journal.replay(_bingoState);
+            }
+            Logger.info("[" + _roomId + ": Replayed " + recordCount + " journal records: " + _bingoState.getPlayerCount() + " players, " + _bingoState.getWinnerCount() + " winners in " + (System.currentTimeMillis() - startTime) + "ms]");
+        }
+        catch (final IOException exception) {
+            throw new RuntimeException("Unable to replay journal of room: " + _roomId, exception);
+        }
+
+        _bingoState.addChangeListener(_journal);
+        _journal.start();
+    }
+
+    /**
+     * Captures a snapshot on the event loop and writes it from the calling thread.
+     *  Nothing is written if the journal has not advanced since the previous snapshot.
+     */
+    protected void _writeSnapshot() {
+        if ( (_journal == null) || (_snapshotFile == null) ) { return; }
+
+        final CountDownLatch countDownLatch = new CountDownLatch(1);
+        final AtomicReference<BingoSnapshot> snapshotReference = new AtomicReference<>();
+        _bingoStateEventLoop.submit(new BingoStateEventLoop.Command<BingoSnapshot>() {
+            @Override
+            public BingoSnapshot run(final BingoState bingoState) {
+                if (Util.areEqual(_snapshotJournalPosition, _journal.getPosition())) { return null; }
+                return BingoSnapshot.capture(bingoState, _journal);
+            }
+        }, new BingoStateEventLoop.Callback<BingoSnapshot>() {
+            @Override
+            public void onComplete(final BingoSnapshot snapshot) {
+                snapshotReference.set(snapshot);
+                countDownLatch.countDown();
+            }
+
+            @Override
+            public void onError(final Exception exception) {
+                countDownLatch.countDown();
+            }
+        });
+
+        try {
+            if (! countDownLatch.await(_snapshotIntervalMs, TimeUnit.MILLISECONDS)) { return; }
+        }
+        catch (final InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        final BingoSnapshot snapshot = snapshotReference.get();
+        if (snapshot == null) { return; }
+
+        try {
+            final long startTime = System.currentTimeMillis();
+
+            // The snapshot must never be durable before the journal records it resumes after, or recovery would append past the journal's end...
+            _journal.force();
+            snapshot.write(_snapshotFile);
+            _snapshotJournalPosition = snapshot.getJournalPosition();
+            Logger.debug("Wrote snapshot of " + snapshot.getPlayerNames().getCount() + " players in " + (System.currentTimeMillis() - startTime) + "ms.");
+        }
+        catch (final IOException exception) {
+            Logger.warn("Unable to write snapshot: " + _snapshotFile.getPath(), exception);
+        }
+    }
+
+    /**
+     * Registers the roster's players before the room accepts connections; throws if the roster could not be registered in time.
+     */
+    protected void _registerRoster() {
+        if ( (_roster == null) || _roster.isEmpty() ) { return; }
+
+        final CountDownLatch countDownLatch = new CountDownLatch(1);
+        final AtomicReference<Exception> errorReference = new AtomicReference<>();
+        _webSocketApi.registerPlayers(_roster, new BingoStateEventLoop.Callback<Integer>() {
+            @Override
+            public void onComplete(final Integer newPlayerCount) {
+                countDownLatch.countDown();
+            }
+
+            @Override
+            public void onError(final Exception exception) {
+                errorReference.set(exception);
+                countDownLatch.countDown();
+            }
+        });
+
+        try {
+            if (! countDownLatch.await(ROSTER_REGISTRATION_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                throw new RuntimeException("Timed out registering the roster of room: " + _roomId);
+            }
+        }
+        catch (final InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while registering the roster of room: " + _roomId, exception);
+        }
+
+        final Exception exception = errorReference.get();
+        if (exception != null) {
+            throw new RuntimeException("Unable to register the roster of room: " + _roomId, exception);
+        }
+    }
+
+    /**
+     * The roster, which may be null, is a list of usernames whose boards are generated before the room begins accepting connections.
+     */
+    public BingoRoom(final String roomId, final List<String> bingoSquares, final Integer ticketCost, final Long seed, final String adminPassword, final List<String> roster, final PartitionedExecutor.Partition partition, final CachedThreadPool threadPool, final BroadcastScheduler broadcastScheduler, final BingoMetrics bingoMetrics) {
+        if (! BingoRoom.isValidRoomId(roomId)) {
+            throw new IllegalArgumentException("Invalid room id: " + roomId);
+        }
+
+        _roomId = roomId;
+        _roster = roster;
+        _bingoState = new BingoState(bingoSquares, ticketCost, seed);
+        _bingoStateEventLoop = new BingoStateEventLoop(_bingoState, bingoMetrics, partition);
+        _webSocketApi = new WebSocketApi(_bingoStateEventLoop, adminPassword, threadPool, broadcastScheduler, bingoMetrics);
+        _replicationPublisher = new ReplicationPublisher(roomId, _bingoStateEventLoop);
+        _replicaClient = null;
+    }
+
+    /**
+     * Creates a read-only replica of a room owned by a primary node; the ReplicaClient must already be connected.
+     *  Replicas have no admin password, journal, snapshots, or roster; administration is performed on the primary.
+     */
+    public BingoRoom(final ReplicaClient replicaClient, final PartitionedExecutor.Partition partition, final CachedThreadPool threadPool, final BroadcastScheduler broadcastScheduler, final BingoMetrics bingoMetrics) {
+        _roomId = replicaClient.getRoomId();
+        _roster = null;
+        _bingoState = new BingoState(replicaClient.getSquareLabels(), replicaClient.getTicketCost(), replicaClient.getSeed());
+        _bingoStateEventLoop = new BingoStateEventLoop(_bingoState, bingoMetrics, partition);
+        _webSocketApi = new WebSocketApi(_bingoStateEventLoop, null, threadPool, broadcastScheduler, bingoMetrics);
+        _webSocketApi.setPrimary(replicaClient);
+        _replicationPublisher = null;
+        _replicaClient = replicaClient;
+    }
+
+    public String getRoomId() {
+        return _roomId;
+    }
+
+    public WebSocketApi getWebSocketApi() {
+        return _webSocketApi;
+    }
+
+    /**
+     * Returns the publisher that streams the room's changes to edge nodes, or null if the room is a replica.
+     */
+    public ReplicationPublisher getReplicationPublisher() {
+        return _replicationPublisher;
+    }
+
+    public Boolean isReplica() {
+        return (_replicaClient != null);
+    }
+
+    /**
+     * Sets the journal the room is recovered from and recorded to; must be called before BingoRoom::start.
+     */
+    public void setJournal(final BingoJournal journal) {
+        _journal = journal;
+    }
+
+    /**
+     * Sets the file the room's state is periodically snapshotted to, and restored from on start; must be called before BingoRoom::start.
+     *  Snapshots are only taken when a journal is set, since the snapshot records the journal position its tail is replayed from.
+     */
+    public void setSnapshotFile(final File snapshotFile, final Long snapshotIntervalMs) {
+        _snapshotFile = snapshotFile;
+        _snapshotIntervalMs = snapshotIntervalMs;
+    }
+
+    /**
+     * Sets the file the room's marks, paid changes, and winners are audited to; must be called before BingoRoom::start.
+     *  Only events applied after the room is recovered are audited.
+     */
+    public void setAuditLogFile(final File auditLogFile) {
+        _auditLogFile = auditLogFile;
+    }
+
+    /**
+     * Recovers the room's state and registers its roster; the room's partition must already be started.
+     *  Once started, the room's WebSocketApi may begin accepting connections.
+     */
+    public void start() {
+        if (_replicaClient != null) {
+            try {
+                _replicaClient.start(_bingoState, _webSocketApi);
+            }
+            catch (final IOException exception) {
+                throw new RuntimeException("Unable to replicate room: " + _roomId, exception);
+            }
+        }
+        else {
+            _recoverState();
+            _bingoState.addChangeListener(_replicationPublisher);
+        }
+
+        if (_auditLogFile != null) {
+            _auditLog = new AuditLog(_roomId, _bingoState, _auditLogFile);
+            try {
+                _auditLog.start();
+            }
+            catch (final IOException exception) {
+                throw new RuntimeException("Unable to open audit log: " + _auditLogFile.getPath(), exception);
+            }
+            _bingoState.addChangeListener(_auditLog);
+        }
+
+        _bingoStateEventLoop.start();
+        _registerRoster();
+        _webSocketApi.start();
+
+        if ( (_journal != null) && (_snapshotFile != null) ) {
+            _snapshotThread.setName("BingoState Snapshot Thread - " + _roomId);
+            _snapshotThread.setDaemon(true);
+            _snapshotThread.start();
+        }
+    }
+
+    /**
+     * Disconnects the room's WebSockets and stops accepting commands.
+     */
+    public void stopWebSocketApi() {
+        _webSocketApi.stop();
+    }
+
+    /**
+     * Writes a final snapshot and closes the journal; the room's partition must still be running.
+     */
+    public void stop() {
+        _snapshotThread.interrupt();
+        try { _snapshotThread.join(5000L); } catch (final InterruptedException exception) { }
+        _writeSnapshot();
+
+        if (_replicaClient != null) {
+            _replicaClient.stop();
+        }
+
+        _bingoStateEventLoop.stop();
+        if (_journal != null) {
+            _journal.stop();
+        }
+        if (_auditLog != null) {
+            _auditLog.stop();
+        }
+    }
+}
@@ -5,62 +5,203 @@ import com.softwareverde.constable.list.List;
 import com.softwareverde.http.server.HttpServer;
 import com.softwareverde.http.server.endpoint.Endpoint;
 import com.softwareverde.http.server.endpoint.WebSocketEndpoint;
-import com.softwareverde.http.server.servlet.DirectoryServlet;
 
 import java.io.File;
-import java.util.concurrent.TimeUnit;
+import java.io.IOException;
+import java.util.LinkedHashMap;
 
 public class BingoServer {
+    protected static final String V1_API_PRE_PATH = "/api/v1";
+
     protected final HttpServer _apiServer = new HttpServer();
     protected final CachedThreadPool _threadPool = new CachedThreadPool(512, 1000L);
-    protected final WebSocketApi _webSocketApi;
+    protected final BroadcastScheduler _broadcastScheduler = new BroadcastScheduler();
+    protected final PartitionedExecutor _partitionedExecutor = new PartitionedExecutor();
+    protected final BingoMetrics _bingoMetrics = new BingoMetrics();
+    protected final LinkedHashMap<String, BingoRoom> _rooms = new LinkedHashMap<>();
+    protected ReplicationServer _replicationServer;
+    protected StaticContentServlet _staticContentServlet;
+    protected Boolean _isStaticContentWatchEnabled = false;
 
-    protected final BingoState _bingoState;
+    protected void _addRoom(final BingoRoom bingoRoom) {
+        final String roomId = bingoRoom.getRoomId();
+        _rooms.put(roomId, bingoRoom);
 
-    public BingoServer(final List<String> bingoSquares, final Integer ticketCost, final Long seed, final String adminPassword) {
+        final WebSocketApi webSocketApi = bingoRoom.getWebSocketApi();
+        _addWebSocketEndpoint((V1_API_PRE_PATH + "/rooms/" + roomId + "/websocket"), webSocketApi);
+        if (BingoRoom.DEFAULT_ROOM_ID.equals(roomId)) {
+            _addWebSocketEndpoint((V1_API_PRE_PATH + "/websocket"), webSocketApi);
+        }
+    }
+
+    protected void _addWebSocketEndpoint(final String path, final WebSocketApi webSocketApi) {
+        final WebSocketEndpoint endpoint = new WebSocketEndpoint(webSocketApi);
+        endpoint.setPath(path);
+        endpoint.setStrictPathEnabled(true);
+        _apiServer.addEndpoint(endpoint);
+    }
+
+    /**
+     * Static content is served from memory at the root path, so it is added after every room's endpoints.
+     */
+    protected void _addStaticContentEndpoint() {
+        final File servedDirectory = new File("www");
+        _staticContentServlet = new StaticContentServlet(servedDirectory, "index.html", 0L); // Revalidated on every use, since the files keep their names across deploys.
+        try {
+            _staticContentServlet.load();
+            if (_isStaticContentWatchEnabled) {
+                _staticContentServlet.startWatching();
+            }
+        }
+        catch (final IOException exception) {
+            throw new RuntimeException("Unable to load static content: " + servedDirectory.getPath(), exception);
+        }
+
+        final Endpoint endpoint = new Endpoint(_staticContentServlet);
+        endpoint.setPath("/");
+        endpoint.setStrictPathEnabled(false);
+        _apiServer.addEndpoint(endpoint);
+    }
+
+    /**
+     * Creates a server without any rooms; rooms are added via BingoServer::addRoom.
+     */
+    public BingoServer() {
         _apiServer.setPort(8080);
 
-        _bingoState = new BingoState(bingoSquares, ticketCost, seed);
-        _webSocketApi = new WebSocketApi(_bingoState, adminPassword);
+        { // Metrics
+            final Endpoint endpoint = new Endpoint(new MetricsServlet(_bingoMetrics));
+            endpoint.setPath((V1_API_PRE_PATH + "/metrics"));
+            endpoint.setStrictPathEnabled(true);
+            _apiServer.addEndpoint(endpoint);
+        }
+    }
 
-        { // Api Endpoints
-            final String apiRootPath = "/api";
+    public BingoServer(final List<String> bingoSquares, final Integer ticketCost, final Long seed, final String adminPassword) {
+        this(bingoSquares, ticketCost, seed, adminPassword, null);
+    }
 
-            { // Api v1
-                final String v1ApiPrePath = (apiRootPath + "/v1");
+    /**
+     * Creates a server with only the default room.
+     *  The roster, which may be null, is a list of usernames whose boards are generated before the server begins accepting connections.
+     */
+    public BingoServer(final List<String> bingoSquares, final Integer ticketCost, final Long seed, final String adminPassword, final List<String> roster) {
+        this();
+        this.addRoom(BingoRoom.DEFAULT_ROOM_ID, bingoSquares, ticketCost, seed, adminPassword, roster);
+    }
 
-                { // WebSocket
-                    final WebSocketEndpoint endpoint = new WebSocketEndpoint(_webSocketApi);
-                    endpoint.setPath((v1ApiPrePath + "/websocket"));
-                    endpoint.setStrictPathEnabled(true);
-                    _apiServer.addEndpoint(endpoint);
-                }
-            }
+    /**
+     * Adds a room, served at /api/v1/rooms/{roomId}/websocket; must be called before BingoServer::start.
+     *  The default room is also served at /api/v1/websocket.
+     *  The roster, which may be null, is a list of usernames whose boards are generated before the server begins accepting connections.
+     */
+    public BingoRoom addRoom(final String roomId, final List<String> bingoSquares, final Integer ticketCost, final Long seed, final String adminPassword, final List<String> roster) {
+        if (_rooms.containsKey(roomId)) {
+            throw new IllegalArgumentException("Duplicate room id: " + roomId);
         }
 
-        { // Static Content
-            final File servedDirectory = new File("www");
-            final DirectoryServlet indexServlet = new DirectoryServlet(servedDirectory);
-            indexServlet.setShouldServeDirectories(true);
-            indexServlet.setIndexFile("index.html");
-            indexServlet.setCacheEnabled(TimeUnit.DAYS.toSeconds(1L));
+        final PartitionedExecutor.Partition partition = _partitionedExecutor.getPartition(roomId);
+        final BingoRoom bingoRoom = new BingoRoom(roomId, bingoSquares, ticketCost, seed, adminPassword, roster, partition, _threadPool, _broadcastScheduler, _bingoMetrics);
+        _addRoom(bingoRoom);
+        return bingoRoom;
+    }
 
-            final Endpoint endpoint = new Endpoint(indexServlet);
-            endpoint.setPath("/");
-            endpoint.setStrictPathEnabled(false);
-            _apiServer.addEndpoint(endpoint);
+    /**
+     * Adds a read-only replica of a room owned by a primary node, served at the same paths as BingoServer::addRoom; must be called before BingoServer::start.
+     *  The ReplicaClient must already be connected.
+     */
+    public BingoRoom addReplicaRoom(final ReplicaClient replicaClient) {
+        final String roomId = replicaClient.getRoomId();
+        if (_rooms.containsKey(roomId)) {
+            throw new IllegalArgumentException("Duplicate room id: " + roomId);
         }
+
+        final PartitionedExecutor.Partition partition = _partitionedExecutor.getPartition(roomId);
+        final BingoRoom bingoRoom = new BingoRoom(replicaClient, partition, _threadPool, _broadcastScheduler, _bingoMetrics);
+        _addRoom(bingoRoom);
+        return bingoRoom;
+    }
+
+    public BingoRoom getRoom(final String roomId) {
+        return _rooms.get(roomId);
+    }
+
+    /**
+     * Sets the port the server listens on; must be called before BingoServer::start.  The default port is 8080.
+     */
+    public void setPort(final Integer port) {
+        _apiServer.setPort(port);
+    }
+
+    /**
+     * If enabled, the static content is reloaded whenever the www directory changes; must be called before BingoServer::start.
+     *  Otherwise, the static content is loaded once, when the server starts.
+     */
+    public void setStaticContentWatchEnabled(final Boolean isEnabled) {
+        _isStaticContentWatchEnabled = isEnabled;
+    }
+
+    /**
+     * Sets how long game state, player list, and winner broadcasts are delayed so that the changes within the interval are sent together.
+     *  The default interval is BroadcastScheduler.DEFAULT_INTERVAL_MS.
+     */
+    public void setBroadcastIntervalMs(final Long broadcastIntervalMs) {
+        _broadcastScheduler.setIntervalMs(broadcastIntervalMs);
+    }
+
+    /**
+     * Makes this node a primary, streaming its rooms' changes to edge nodes that connect to the address and port and present the secret;
+     *  must be called before BingoServer::start.  A port of 0 listens on any available port, which is available via BingoServer::getReplicationPort once started.
+     */
+    public void setReplicationPort(final String bindAddress, final Integer replicationPort, final String secret) {
+        _replicationServer = new ReplicationServer(_rooms, bindAddress, replicationPort, secret);
+    }
+
+    /**
+     * Returns the port edge nodes connect to, or null if this node is not a primary.
+     */
+    public Integer getReplicationPort() {
+        return (_replicationServer != null ? _replicationServer.getPort() : null);
     }
 
     public void start() {
         _threadPool.start();
+        _partitionedExecutor.start();
+        for (final BingoRoom bingoRoom : _rooms.values()) {
+            bingoRoom.start();
+        }
+
+        _addStaticContentEndpoint();
         _apiServer.start();
-        _webSocketApi.start();
+
+        if (_replicationServer != null) {
+            try {
+                _replicationServer.start();
+            }
+            catch (final IOException exception) {
+                throw new RuntimeException("Unable to start replication server.", exception);
+            }
+        }
     }
 
     public void stop() {
-        _webSocketApi.stop();
+        if (_replicationServer != null) {
+            _replicationServer.stop();
+        }
+
+        for (final BingoRoom bingoRoom : _rooms.values()) {
+            bingoRoom.stopWebSocketApi();
+        }
         _apiServer.stop();
+        if (_staticContentServlet != null) {
+            _staticContentServlet.stopWatching();
+        }
+
+        for (final BingoRoom bingoRoom : _rooms.values()) {
+            bingoRoom.stop();
+        }
+        _broadcastScheduler.stop();
+        _partitionedExecutor.stop();
         _threadPool.stop();
     }
 
@@ -69,4 +210,4 @@ public class BingoServer {
             try { Thread.sleep(10000L); } catch (final Exception exception) { break; }
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,296 @@
+package com.softwareverde.wow.bingo;
+
+import com.softwareverde.constable.list.List;
+import com.softwareverde.constable.list.immutable.ImmutableListBuilder;
+import com.softwareverde.logging.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * A compact, immutable copy of a BingoState, and the position of the BingoJournal at the moment it was captured.
+ *  Boards are not stored: each board is regenerated from the seed and the player's name, and its marks are derived from the marked labels.
+ *  A snapshot is captured on the thread that owns the BingoState, but may be written from any thread.
+ *
+ *  The file consists of the journal header (magic, format version, seed, ticket cost, label count, journal id), the journal position,
+ *  the state version, the marked labels as a bitset, the player names, the paid players as a bitset, the winners' player ids in order,
+ *  and a trailing crc32 of everything before it.
+ */
+public class BingoSnapshot {
+    protected static final int MAGIC = 0x424E4753; // "BNGS"
+    protected static final int FORMAT_VERSION = 1;
+
+    protected static long[] _newBitset(final int bitCount) {
+        return new long[(bitCount + 63) / 64];
+    }
+
+    protected static boolean _isBitSet(final long[] bitset, final int index) {
+        return ((bitset[index >>> 6] & (1L << (index & 63))) != 0L);
+    }
+
+    protected static void _setBit(final long[] bitset, final int index) {
+        bitset[index >>> 6] |= (1L << (index & 63));
+    }
+
+    protected static void _writeBitset(final DataOutputStream outputStream, final long[] bitset) throws IOException {
+        outputStream.writeInt(bitset.length);
+        for (final long word : bitset) {
+            outputStream.writeLong(word);
+        }
+    }
+
+    protected static long[] _readBitset(final DataInputStream inputStream, final int bitCount) throws IOException {
+        final int wordCount = inputStream.readInt();
+        if (wordCount != ((bitCount + 63) / 64)) {
+            throw new IOException("Invalid bitset length: " + wordCount);
+        }
+
+        final long[] bitset = new long[wordCount];
+        for (int i = 0; i < wordCount; ++i) {
+            bitset[i] = inputStream.readLong();
+        }
+        return bitset;
+    }
+
+    /**
+     * Copies the BingoState and the current journal position.
+     *  Must be invoked from the thread that owns the BingoState, which must be attached to the journal.
+     *  The journal may be null if the snapshot is not used for recovery, such as when it is sent to a replica.
+     */
+    public static BingoSnapshot capture(final BingoState bingoState, final BingoJournal journal) {
+        final List<String> squareLabels = bingoState.getSquareLabels();
+        final int labelCount = squareLabels.getCount();
+        final long[] markedLabels = _newBitset(labelCount);
+        for (int i = 0; i < labelCount; ++i) {
+            if (bingoState.isLabelMarked(i)) {
+                _setBit(markedLabels, i);
+            }
+        }
+
+        final List<String> playerNames = bingoState.getPlayers();
+        final int playerCount = playerNames.getCount();
+        final long[] paidPlayers = _newBitset(playerCount);
+        for (int i = 0; i < playerCount; ++i) {
+            if (bingoState.hasPaid(i)) {
+                _setBit(paidPlayers, i);
+            }
+        }
+
+        final List<Integer> winningPlayerIds = bingoState.getWinningPlayerIds();
+        final int[] winners = new int[winningPlayerIds.getCount()];
+        for (int i = 0; i < winners.length; ++i) {
+            winners[i] = winningPlayerIds.get(i);
+        }
+
+        if (journal == null) {
+            final BingoJournal.Header header = new BingoJournal.Header(bingoState.getSeed(), bingoState.getTicketCost(), labelCount);
+            return new BingoSnapshot(header, 0L, 0L, bingoState.getVersion(), markedLabels, playerNames, paidPlayers, winners);
+        }
+
+        return new BingoSnapshot(journal.getHeader(), journal.getJournalId(), journal.getPosition(), bingoState.getVersion(), markedLabels, playerNames, paidPlayers, winners);
+    }
+
+    /**
+     * Reads a snapshot written by BingoSnapshot::_write; returns null if the stream does not begin with a snapshot.
+     */
+    protected static BingoSnapshot _read(final DataInputStream inputStream) throws IOException {
+        final int magic = inputStream.readInt();
+        final int formatVersion = inputStream.readInt();
+        if ( (magic != MAGIC) || (formatVersion != FORMAT_VERSION) ) { return null; }
+
+        final long seed = inputStream.readLong();
+        final int ticketCost = inputStream.readInt();
+        final int labelCount = inputStream.readInt();
+        final long journalId = inputStream.readLong();
+        final long journalPosition = inputStream.readLong();
+        final long version = inputStream.readLong();
+        final long[] markedLabels = _readBitset(inputStream, labelCount);
+
+        final int playerCount = inputStream.readInt();
+        final ImmutableListBuilder<String> playerNames = new ImmutableListBuilder<>(playerCount);
+        for (int i = 0; i < playerCount; ++i) {
+            final int nameByteCount = inputStream.readUnsignedShort();
+            final byte[] nameBytes = new byte[nameByteCount];
+            inputStream.readFully(nameBytes);
+            playerNames.add(new String(nameBytes, StandardCharsets.UTF_8));
+        }
+        final long[] paidPlayers = _readBitset(inputStream, playerCount);
+
+        final int winnerCount = inputStream.readInt();
+        final int[] winners = new int[winnerCount];
+        for (int i = 0; i < winnerCount; ++i) {
+            winners[i] = inputStream.readInt();
+        }
+
+        final BingoJournal.Header header = new BingoJournal.Header(seed, ticketCost, labelCount);
+        return new BingoSnapshot(header, journalId, journalPosition, version, markedLabels, playerNames.build(), paidPlayers, winners);
+    }
+
+    /**
+     * Returns the snapshot stored within the file, or null if the file does not exist or is not a valid snapshot.
+     */
+    public static BingoSnapshot read(final File file) {
+        if (! file.exists()) { return null; }
+
+        final CRC32 crc32 = new CRC32();
+        try (final DataInputStream inputStream = new DataInputStream(new CheckedInputStream(new BufferedInputStream(new FileInputStream(file)), crc32))) {
+            final BingoSnapshot snapshot = _read(inputStream);
+            if (snapshot == null) { return null; }
+
+            final int expectedChecksum = (int) crc32.getValue();
+            final int checksum = inputStream.readInt();
+            if (checksum != expectedChecksum) {
+                Logger.info("Discarding corrupt snapshot: " + file.getPath());
+                return null;
+            }
+
+            return snapshot;
+        }
+        catch (final IOException exception) {
+            Logger.warn("Unable to read snapshot: " + file.getPath(), exception);
+            return null;
+        }
+    }
+
+    /**
+     * Returns the snapshot serialized via BingoSnapshot::toBytes, or null if the bytes are not a snapshot.
+     */
+    public static BingoSnapshot fromBytes(final byte[] bytes) throws IOException {
+        try (final DataInputStream inputStream = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            return _read(inputStream);
+        }
+    }
+
+    protected final BingoJournal.Header _header;
+    protected final Long _journalId;
+    protected final Long _journalPosition;
+    protected final Long _version;
+    protected final long[] _markedLabels;
+    protected final List<String> _playerNames;
+    protected final long[] _paidPlayers;
+    protected final int[] _winners;
+
+    protected BingoSnapshot(final BingoJournal.Header header, final Long journalId, final Long journalPosition, final Long version, final long[] markedLabels, final List<String> playerNames, final long[] paidPlayers, final int[] winners) {
+        _header = header;
+        _journalId = journalId;
+        _journalPosition = journalPosition;
+        _version = version;
+        _markedLabels = markedLabels;
+        _playerNames = playerNames;
+        _paidPlayers = paidPlayers;
+        _winners = winners;
+    }
+
+    /**
+     * Returns true if the snapshot was captured from the journal, and its tail may therefore be replayed from BingoSnapshot::getJournalPosition.
+     */
+    public Boolean isFromJournal(final BingoJournal journal) {
+        final BingoJournal.Header header = journal.getHeader();
+        if (! _journalId.equals(journal.getJournalId())) { return false; }
+        return ( _header.seed.equals(header.seed) && _header.ticketCost.equals(header.ticketCost) && _header.labelCount.equals(header.labelCount) );
+    }
+
+    public Long getJournalPosition() {
+        return _journalPosition;
+    }
+
+    public Long getVersion() {
+        return _version;
+    }
+
+    public Boolean isLabelMarked(final Integer labelIndex) {
+        return _isBitSet(_markedLabels, labelIndex);
+    }
+
+    public List<String> getPlayerNames() {
+        return _playerNames;
+    }
+
+    public Boolean hasPaid(final Integer playerId) {
+        return _isBitSet(_paidPlayers, playerId);
+    }
+
+    /**
+     * Returns the player ids of the winners, in the order they achieved their bingo.
+     */
+    public int[] getWinners() {
+        return _winners;
+    }
+
+    protected void _write(final DataOutputStream outputStream) throws IOException {
+        outputStream.writeInt(MAGIC);
+        outputStream.writeInt(FORMAT_VERSION);
+        outputStream.writeLong(_header.seed);
+        outputStream.writeInt(_header.ticketCost);
+        outputStream.writeInt(_header.labelCount);
+        outputStream.writeLong(_journalId);
+        outputStream.writeLong(_journalPosition);
+        outputStream.writeLong(_version);
+        _writeBitset(outputStream, _markedLabels);
+
+        outputStream.writeInt(_playerNames.getCount());
+        for (final String playerName : _playerNames) {
+            final byte[] nameBytes = playerName.getBytes(StandardCharsets.UTF_8);
+            if (nameBytes.length > 0xFFFF) { // The length would be truncated, corrupting every record after the name while the checksum still validates.
+                throw new IOException("Player name of " + nameBytes.length + " bytes exceeds the snapshot's limit of 65535 bytes.");
+            }
+            outputStream.writeShort(nameBytes.length);
+            outputStream.write(nameBytes);
+        }
+        _writeBitset(outputStream, _paidPlayers);
+
+        outputStream.writeInt(_winners.length);
+        for (final int playerId : _winners) {
+            outputStream.writeInt(playerId);
+        }
+    }
+
+    /**
+     * Writes the snapshot to a temporary file and then moves it over the file, so the file always contains a complete snapshot.
+     */
+    public void write(final File file) throws IOException {
+        final File temporaryFile = new File(file.getPath() + ".tmp");
+
+        final CRC32 crc32 = new CRC32();
+        try (final FileOutputStream fileOutputStream = new FileOutputStream(temporaryFile)) {
+            final DataOutputStream outputStream = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(fileOutputStream), crc32));
+            _write(outputStream);
+
+            outputStream.flush();
+            outputStream.writeInt((int) crc32.getValue());
+            outputStream.flush();
+
+            fileOutputStream.getFD().sync();
+        }
+
+        Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Serializes the snapshot without a checksum, for transports that provide their own integrity.
+     */
+    public byte[] toBytes() {
+        final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        try (final DataOutputStream outputStream = new DataOutputStream(byteArrayOutputStream)) {
+            _write(outputStream);
+        }
+        catch (final IOException exception) {
+            throw new RuntimeException(exception); // Not possible; the stream is in-memory.
+        }
+        return byteArrayOutputStream.toByteArray();
+    }
+}
@@ -1,121 +1,367 @@
 package com.softwareverde.wow.bingo;
 
 import com.softwareverde.constable.list.List;
-import com.softwareverde.constable.list.immutable.ImmutableList;
+import com.softwareverde.constable.list.immutable.ImmutableListBuilder;
 import com.softwareverde.constable.list.mutable.MutableList;
 import com.softwareverde.util.Util;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class BingoState {
+    /**
+     * Receives every join, mark, and paid change as it is applied, on the thread that owns the BingoState.
+     *  Listeners must not block; they are used to journal and replicate the changes.
+     */
+    public interface ChangeListener {
+        void onPlayerJoined(String playerName);
+        void onLabelMarked(Integer labelIndex, Boolean isMarked);
+        void onPaidChanged(Integer playerId, Boolean hasPaid);
+
+        /**
+         * Invoked by BingoState::markLabel, after BingoState::onLabelMarked, for each bingo the mark completes;
+         *  winnerIndex is the bingo's position within the order of winners.
+         */
+        void onWinnerAdded(Integer playerId, Integer winnerIndex);
+    }
+
+    /**
+     * The board cells displaying a label are each packed into an int as ((playerId << CELL_INDEX_BIT_COUNT) | cellIndex),
+     *  so that indexing a board allocates nothing and marking a label walks a primitive array.
+     */
+    protected static final int CELL_INDEX_BIT_COUNT = 5;
+    protected static final int CELL_INDEX_MASK = ((1 << CELL_INDEX_BIT_COUNT) - 1);
+
+    /**
+     * The maximum length of a player name, in UTF-8 bytes; names are journaled, snapshotted, and replicated with 16-bit lengths.
+     */
+    public static final Integer MAX_PLAYER_NAME_BYTE_COUNT = 256;
+
+    /**
+     * Returns true if the name is non-empty and no longer than MAX_PLAYER_NAME_BYTE_COUNT when encoded as UTF-8.
+     */
+    public static Boolean isValidPlayerName(final String name) {
+        if ( (name == null) || name.isEmpty() ) { return false; }
+        if (name.length() > MAX_PLAYER_NAME_BYTE_COUNT) { return false; } // Every char is at least one byte.
+        return (name.getBytes(StandardCharsets.UTF_8).length <= MAX_PLAYER_NAME_BYTE_COUNT);
+    }
+
     protected final Long _seed;
     protected final Integer _ticketCost;
     protected final List<String> _squareLabels;
     protected final HashMap<Integer, Boolean> _markedLabelIndexes = new HashMap<>();
-    protected final HashMap<String, BingoGame> _bingoGames = new HashMap<>();
-    protected final HashMap<String, Boolean> _playersPaid = new HashMap<>();
-    protected final MutableList<String> _playersWon = new MutableList<>();
-
-    protected String _getPlayer(final BingoGame bingoGame) {
-        for (final String playerName : _bingoGames.keySet()) {
-            final BingoGame otherBingoGame = _bingoGames.get(playerName);
-            if (bingoGame == otherBingoGame) { // NOTE: Intentional reference equality...
-                return playerName;
-            }
+    protected final PlayerRegistry _playerRegistry = new PlayerRegistry();
+    protected final MutableList<BingoGame> _bingoGames = new MutableList<>(); // Indexed by player id.
+    protected final MutableList<Boolean> _playersPaid = new MutableList<>(); // Indexed by player id.
+    protected final MutableList<Integer> _playersWon = new MutableList<>(); // The player ids of the winners, in order of their bingo.
+    protected final int[][] _labelBoardCells; // The packed board cells displaying each label, indexed by label index; each array grows as players are added.
+    protected final int[] _labelBoardCellCounts; // The number of packed board cells within each of _labelBoardCells.
+    protected final ConcurrentHashMap<String, BingoGame> _publishedBingoGames = new ConcurrentHashMap<>(); // Fully-initialized BingoGames, by player name; may be read from any thread.
+    protected final BingoAggregates _aggregates;
+    protected final MutableList<ChangeListener> _changeListeners = new MutableList<>();
+    protected volatile long _version = 0L; // Incremented each time a label is marked or unmarked; written only by the owning thread, but may be read from any thread.
+
+    protected Boolean _isValidPlayerId(final Integer playerId) {
+        return ( (playerId != null) && (playerId >= 0) && (playerId < _bingoGames.getCount()) );
+    }
+
+    protected void _addBoardCell(final int labelIndex, final int boardCell) {
+        final int boardCellCount = _labelBoardCellCounts[labelIndex];
+        int[] boardCells = _labelBoardCells[labelIndex];
+        if (boardCellCount == boardCells.length) {
+            boardCells = Arrays.copyOf(boardCells, (boardCells.length * 2));
+            _labelBoardCells[labelIndex] = boardCells;
         }
-        return null;
+
+        boardCells[boardCellCount] = boardCell;
+        _labelBoardCellCounts[labelIndex] = (boardCellCount + 1);
     }
 
     public BingoState(final List<String> squareLabels, final Integer ticketCost, final Long seed) {
         _ticketCost = ticketCost;
         _seed = seed;
+        _aggregates = new BingoAggregates(ticketCost);
         _squareLabels = squareLabels.asConst();
 
+        final int labelCount = _squareLabels.getCount();
+        _labelBoardCells = new int[labelCount][];
+        _labelBoardCellCounts = new int[labelCount];
+
         int index = 0;
         for (final String label : _squareLabels) {
             _markedLabelIndexes.put(index, false);
+            _labelBoardCells[index] = new int[16];
             index += 1;
         }
     }
 
-    public void newBingoGame(final String name) {
+    /**
+     * Adds a listener that receives every subsequent join, mark, paid change, and winner.
+     *  A journal should be replayed into this BingoState before it is added as a listener.
+     */
+    public void addChangeListener(final ChangeListener changeListener) {
+        _changeListeners.add(changeListener);
+    }
+
+    /**
+     * Restores the players, paid flags, marked labels, and winners captured by the snapshot; the BingoState must not yet have any players.
+     *  The boards are regenerated in parallel from the seed and each player's name, and marked from the snapshot's marked labels.
+     */
+    public void restore(final BingoSnapshot snapshot) {
+        final int labelCount = _squareLabels.getCount();
+        for (int labelIndex = 0; labelIndex < labelCount; ++labelIndex) {
+            _markedLabelIndexes.put(labelIndex, snapshot.isLabelMarked(labelIndex));
+        }
+
+        final List<String> playerNames = snapshot.getPlayerNames();
+        final int playerCount = playerNames.getCount();
+        final ImmutableListBuilder<Long> seeds = new ImmutableListBuilder<>(playerCount);
+        for (final String playerName : playerNames) {
+            seeds.add(this.getBoardSeed(playerName));
+        }
+
+        final BoardGenerator boardGenerator = new BoardGenerator();
+        final int[][] boardLayouts;
+        try {
+            boardLayouts = boardGenerator.generateLayouts(seeds.build(), labelCount);
+        }
+        finally {
+            boardGenerator.stop();
+        }
+        for (int playerId = 0; playerId < playerCount; ++playerId) {
+            this.newBingoGame(playerNames.get(playerId), boardLayouts[playerId]);
+            this.setHasPaid(playerId, snapshot.hasPaid(playerId));
+        }
+
+        for (final int playerId : snapshot.getWinners()) {
+            _playersWon.add(playerId);
+            _aggregates.onWinnerAdded();
+        }
+
+        _version = snapshot.getVersion();
+    }
+
+    /**
+     * Creates the BingoGame for the player and returns the player's id.
+     *  If the player already has a BingoGame then its existing id is returned.
+     */
+    public Integer newBingoGame(final String name) {
+        return this.newBingoGame(name, null);
+    }
+
+    /**
+     * Creates the BingoGame for the player from a layout pregenerated via BingoGame::generateLayout with BingoState::getBoardSeed,
+     *  and returns the player's id.  If boardLayout is null then the layout is generated.
+     *  If the player already has a BingoGame then its existing id is returned.
+     *  Throws an IllegalArgumentException, without creating the player, if the name is not valid per BingoState::isValidPlayerName.
+     */
+    public Integer newBingoGame(final String name, final int[] boardLayout) {
+        if (! BingoState.isValidPlayerName(name)) {
+            throw new IllegalArgumentException("Invalid player name.");
+        }
+
+        final Integer existingPlayerId = _playerRegistry.getPlayerId(name);
+        if (existingPlayerId != null) { return existingPlayerId; }
+
+        final Integer playerId = _playerRegistry.registerPlayer(name);
         final Integer labelCount = _squareLabels.getCount();
-        final Long seed = Math.abs(_seed + name.hashCode());
-        final BingoGame bingoGame = new BingoGame(labelCount, seed);
+        final Long seed = this.getBoardSeed(name);
+        final BingoGame bingoGame = (boardLayout != null ? new BingoGame(playerId, boardLayout, seed) : new BingoGame(playerId, labelCount, seed));
+
+        int marks = 0;
+        for (int cellIndex = 0; cellIndex < BingoGame.BOARD_SIZE; ++cellIndex) {
+            final int labelIndex = bingoGame.getLabelIndex(cellIndex);
+            final Boolean isMarked = Util.coalesce(_markedLabelIndexes.get(labelIndex));
+            if (isMarked) {
+                marks |= (1 << cellIndex);
+            }
+
+            _addBoardCell(labelIndex, ((playerId << CELL_INDEX_BIT_COUNT) | cellIndex));
+        }
+        bingoGame.setMarks(marks);
+
+        _bingoGames.add(bingoGame);
+        _playersPaid.add(false);
+        _publishedBingoGames.put(name, bingoGame);
 
-        for (final Integer markedLabelIndex : _markedLabelIndexes.keySet()) {
-            final Boolean isMarked = _markedLabelIndexes.get(markedLabelIndex);
-            bingoGame.updateBoard(markedLabelIndex, isMarked);
+        for (final ChangeListener changeListener : _changeListeners) {
+            changeListener.onPlayerJoined(name);
         }
 
-        _bingoGames.put(name, bingoGame);
-        _playersPaid.put(name, false);
+        return playerId;
+    }
+
+    public Long getSeed() {
+        return _seed;
+    }
+
+    public Integer getTicketCost() {
+        return _ticketCost;
+    }
+
+    /**
+     * Returns the seed used to generate the player's board.
+     *  May be invoked from any thread.
+     */
+    public Long getBoardSeed(final String name) {
+        return Math.abs(_seed + name.hashCode());
+    }
+
+    /**
+     * Returns the id of the player, or null if the player does not have a BingoGame.
+     */
+    public Integer getPlayerId(final String name) {
+        return _playerRegistry.getPlayerId(name);
+    }
+
+    public String getPlayerName(final Integer playerId) {
+        return _playerRegistry.getPlayerName(playerId);
+    }
+
+    /**
+     * Returns the BingoGame of the player, or null if the player does not have a BingoGame.
+     *  Unlike the rest of BingoState, this method may be invoked from any thread.
+     */
+    public BingoGame findPublishedBingoGame(final String name) {
+        return _publishedBingoGames.get(name);
     }
 
-    public BingoGame getBingoGame(final String name) {
-        return _bingoGames.get(name);
+    public Integer getPlayerCount() {
+        return _bingoGames.getCount();
     }
 
-    public Boolean hasBingoGame(final String name) {
-        return _bingoGames.containsKey(name);
+    public BingoGame getBingoGame(final Integer playerId) {
+        if (! _isValidPlayerId(playerId)) { return null; }
+        return _bingoGames.get(playerId);
+    }
+
+    /**
+     * Returns true if the index is one of the square labels; BingoState::markLabel ignores any other index.  May be invoked from any thread.
+     */
+    public Boolean isValidLabelIndex(final Integer labelIndex) {
+        return ( (labelIndex != null) && (labelIndex >= 0) && (labelIndex < _labelBoardCells.length) );
     }
 
     public void markLabel(final Integer labelIndex, final Boolean isMarked) {
+        if (! this.isValidLabelIndex(labelIndex)) { return; }
+
+        for (final ChangeListener changeListener : _changeListeners) {
+            changeListener.onLabelMarked(labelIndex, isMarked);
+        }
+
         _markedLabelIndexes.put(labelIndex, isMarked);
-        for (final BingoGame bingoGame : _bingoGames.values()) {
+
+        final int[] boardCells = _labelBoardCells[labelIndex];
+        final int boardCellCount = _labelBoardCellCounts[labelIndex];
+        for (int i = 0; i < boardCellCount; ++i) {
+            final int boardCell = boardCells[i];
+            final BingoGame bingoGame = _bingoGames.get(boardCell >>> CELL_INDEX_BIT_COUNT);
             final int previousBingoCount = bingoGame.getBingoCount();
-            bingoGame.updateBoard(labelIndex, isMarked);
+            bingoGame.setCellMarked((boardCell & CELL_INDEX_MASK), isMarked);
             final int newBingoCount = bingoGame.getBingoCount();
 
             if (newBingoCount > previousBingoCount) {
-                final String playerName = _getPlayer(bingoGame);
-                if ( (playerName != null) && Util.coalesce(_playersPaid.get(playerName)) ) {
-                    _playersWon.add(playerName);
+                final Integer playerId = bingoGame.getPlayerId();
+                if (_playersPaid.get(playerId)) {
+                    _playersWon.add(playerId);
+                    _aggregates.onWinnerAdded();
+
+                    final Integer winnerIndex = (_playersWon.getCount() - 1);
+                    for (final ChangeListener changeListener : _changeListeners) {
+                        changeListener.onWinnerAdded(playerId, winnerIndex);
+                    }
                 }
             }
         }
+
+        // NOTE: The version is incremented after the boards are updated, so a concurrent reader that reads the version
+        //  before reading a board never receives a version newer than the board.
+        _version = (_version + 1L);
     }
 
-    public List<String> getWinningBingoUsers() {
+    /**
+     * Returns the player ids of the winners, in the order they achieved their bingo.
+     *  A player appears once for each of their (paid) bingos.
+     */
+    public List<Integer> getWinningPlayerIds() {
         return _playersWon.asConst();
     }
 
+    /**
+     * May be invoked from any thread.
+     */
+    public Integer getWinnerCount() {
+        final BingoAggregates.Totals totals = _aggregates.getTotals();
+        return totals.getWinnerCount();
+    }
+
+    /**
+     * Returns the current paid count, pot, and payouts.
+     *  May be invoked from any thread.
+     */
+    public BingoAggregates.Totals getTotals() {
+        return _aggregates.getTotals();
+    }
+
+    /**
+     * Returns the version of the marked labels.
+     *  The version is incremented once for every call to BingoState::markLabel, so a client holding a board at version N
+     *  may apply the mark for version N+1 directly, but must reload its board if it skips a version.
+     *  May be invoked from any thread.
+     */
+    public Long getVersion() {
+        return _version;
+    }
+
     public Boolean isLabelMarked(final Integer labelIndex) {
         return _markedLabelIndexes.get(labelIndex);
     }
 
+    /**
+     * May be invoked from any thread.
+     */
     public List<String> getSquareLabels() {
         return _squareLabels;
     }
 
     public List<String> getPlayers() {
-        return new ImmutableList<>(_bingoGames.keySet());
+        return _playerRegistry.getPlayerNames();
     }
 
-    public void setHasPaid(final String playerName, final Boolean hasPaid) {
-        _playersPaid.put(playerName, hasPaid);
+    public void setHasPaid(final Integer playerId, final Boolean hasPaid) {
+        if (! _isValidPlayerId(playerId)) { return; }
+
+        final boolean isPaid = Util.coalesce(hasPaid);
+        final boolean wasPaid = _playersPaid.get(playerId);
+        _playersPaid.set(playerId, isPaid);
+
+        for (final ChangeListener changeListener : _changeListeners) {
+            changeListener.onPaidChanged(playerId, isPaid);
+        }
+
+        _aggregates.onPaidChanged(wasPaid, isPaid);
     }
 
-    public Boolean hasPaid(final String playerName) {
-        return _playersPaid.get(playerName);
+    public Boolean hasPaid(final Integer playerId) {
+        if (! _isValidPlayerId(playerId)) { return false; }
+        return _playersPaid.get(playerId);
     }
 
+    /**
+     * May be invoked from any thread.
+     */
     public Long getJackpot(final Integer winnerIndex) {
-        int paidUserCount = 0;
-        for (final String player : _playersPaid.keySet()) {
-            final Boolean hasPaid = _playersPaid.get(player);
-            if (hasPaid) {
-                paidUserCount += 1;
-            }
-        }
-
-        final int totalJackpot = (_ticketCost * paidUserCount);
-        final double divisor = Math.pow(2.0, (winnerIndex + 1));
-        return (long) (totalJackpot / divisor);
+        final BingoAggregates.Totals totals = _aggregates.getTotals();
+        return totals.getPayout(winnerIndex);
     }
 
+    /**
+     * May be invoked from any thread.
+     */
     public Long getJackpot() {
-        final int winnerCount = _playersWon.getCount();
-        return this.getJackpot(winnerCount);
+        final BingoAggregates.Totals totals = _aggregates.getTotals();
+        return totals.getJackpot();
     }
 }
@@ -0,0 +1,133 @@
+package com.softwareverde.wow.bingo;
+
+import com.softwareverde.logging.Logger;
+
+/**
+ * Owns a BingoState and applies every command to it from a single thread, in the order the commands were submitted.
+ *  Since the BingoState is only ever accessed by the event loop's thread, it requires no locking, and submitting a command never blocks.
+ *  Each command's callback is invoked on the event loop's thread immediately after the command is applied,
+ *  so callbacks observe the state exactly as the command left it; callbacks should therefore be brief and must not block.
+ *  The event loop's thread is a PartitionedExecutor.Partition, which may be shared with the event loops of other rooms.
+ */
+public class BingoStateEventLoop {
+    public interface Command<T> {
+        T run(BingoState bingoState);
+    }
+
+    public interface Callback<T> {
+        void onComplete(T result);
+
+        /**
+         * Invoked instead of Callback::onComplete if the command threw, or, from the submitting thread, if the event loop has been stopped.
+         */
+        void onError(Exception exception);
+    }
+
+    protected final BingoState _bingoState;
+    protected final BingoMetrics _bingoMetrics;
+    protected final PartitionedExecutor.Partition _partition;
+    protected final Boolean _ownsPartition;
+
+    protected volatile Boolean _isShuttingDown = false;
+
+    /**
+     * Creates an event loop with its own dedicated thread.
+     */
+    public BingoStateEventLoop(final BingoState bingoState, final BingoMetrics bingoMetrics) {
+        this(bingoState, bingoMetrics, new PartitionedExecutor.Partition("BingoState Event Loop"), true);
+    }
+
+    /**
+     * Creates an event loop that runs on the partition; the partition's lifecycle is managed by its PartitionedExecutor.
+     */
+    public BingoStateEventLoop(final BingoState bingoState, final BingoMetrics bingoMetrics, final PartitionedExecutor.Partition partition) {
+        this(bingoState, bingoMetrics, partition, false);
+    }
+
+    protected BingoStateEventLoop(final BingoState bingoState, final BingoMetrics bingoMetrics, final PartitionedExecutor.Partition partition, final Boolean ownsPartition) {
+        _bingoState = bingoState;
+        _bingoMetrics = bingoMetrics;
+        _partition = partition;
+        _ownsPartition = ownsPartition;
+    }
+
+    /**
+     * Queues the command to be applied to the BingoState.
+     *  The callback, which may be null, is invoked on the event loop's thread with the command's result, or with the exception the command threw.
+     *  Commands submitted after BingoStateEventLoop::stop are not run; their callback's Callback::onError is invoked immediately instead.
+     */
+    public <T> void submit(final Command<T> command, final Callback<T> callback) {
+        if (_isShuttingDown) {
+            Logger.debug("Command submitted after shutdown; ignoring.");
+            if (callback != null) {
+                callback.onError(new IllegalStateException("The event loop has been stopped."));
+            }
+            return;
+        }
+
+        final long submitNanoTime = System.nanoTime();
+        _partition.execute(new Runnable() {
+            @Override
+            public void run() {
+                final long startNanoTime = System.nanoTime();
+                _bingoMetrics.getEventLoopQueueWaitHistogram().record(startNanoTime - submitNanoTime);
+
+                try {
+                    final T result;
+                    try {
+                        result = command.run(_bingoState);
+                    }
+                    catch (final Exception exception) {
+                        Logger.warn("BingoState command failed.", exception);
+                        if (callback != null) {
+                            callback.onError(exception);
+                        }
+                        return;
+                    }
+
+                    if (callback != null) {
+                        callback.onComplete(result);
+                    }
+                }
+                finally {
+                    _bingoMetrics.getEventLoopExecutionHistogram().recordSince(startNanoTime);
+                }
+            }
+        });
+    }
+
+    /**
+     * Runs the command immediately on the calling thread, bypassing the event loop.
+     *  The command must only use the BingoState methods documented as safe to invoke from any thread.
+     */
+    public <T> T readConcurrently(final Command<T> command) {
+        return command.run(_bingoState);
+    }
+
+    /**
+     * Returns true if the current thread is the event loop's thread, and may therefore access the BingoState directly.
+     */
+    public Boolean isEventLoopThread() {
+        return _partition.isPartitionThread();
+    }
+
+    /**
+     * Returns the number of commands queued on the event loop's thread, including those of other rooms sharing its partition.
+     */
+    public Integer getQueuedCommandCount() {
+        return _partition.getQueuedTaskCount();
+    }
+
+    public void start() {
+        if (_ownsPartition) {
+            _partition.start();
+        }
+    }
+
+    public void stop() {
+        _isShuttingDown = true;
+        if (_ownsPartition) {
+            _partition.stop();
+        }
+    }
+}
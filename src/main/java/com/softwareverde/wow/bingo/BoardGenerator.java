@@ -0,0 +1,116 @@
+package com.softwareverde.wow.bingo;
+
+import com.softwareverde.constable.list.List;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates board layouts in parallel, striping the boards across a fixed number of threads.
+ *  Generation is a pure function of the seed, so the layouts may be generated on any thread and registered later.
+ *  Small batches, such as a single join, are generated on the calling thread; only larger batches use the generator's threads,
+ *  which are created as needed and exit once idle, so a generator may be kept for the lifetime of its room.
+ */
+public class BoardGenerator {
+    public static final Integer DEFAULT_PARALLEL_THRESHOLD = 256; // Below this many boards, the threads' overhead exceeds their benefit.
+    protected static final Long IDLE_THREAD_TIMEOUT_MS = 60000L;
+
+    protected final Integer _threadCount;
+    protected final Integer _parallelThreshold;
+    protected final ThreadPoolExecutor _executorService;
+
+    protected static void _generateLayouts(final List<Long> seeds, final Integer uniqueSquareCount, final int[][] layouts, final int firstIndex, final int stride) {
+        final int boardCount = layouts.length;
+        for (int i = firstIndex; i < boardCount; i += stride) {
+            final Long seed = seeds.get(i);
+            layouts[i] = BingoGame.generateLayout(uniqueSquareCount, seed);
+        }
+    }
+
+    public BoardGenerator() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    public BoardGenerator(final Integer threadCount, final Integer parallelThreshold) {
+        _threadCount = Math.max(1, threadCount);
+        _parallelThreshold = parallelThreshold;
+
+        final AtomicInteger threadIndex = new AtomicInteger(0);
+        _executorService = new ThreadPoolExecutor(_threadCount, _threadCount, IDLE_THREAD_TIMEOUT_MS, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable);
+                thread.setName("Board Generator " + threadIndex.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        _executorService.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Returns the layout generated for each seed, in the same order as the seeds.
+     *  Never returns a partial result: a failure within any thread is rethrown, and an interrupt throws a RuntimeException
+     *  (with the thread's interrupt flag restored) after the remaining generation is cancelled.
+     */
+    public int[][] generateLayouts(final List<Long> seeds, final Integer uniqueSquareCount) {
+        final int boardCount = seeds.getCount();
+        final int[][] layouts = new int[boardCount][];
+
+        final int threadCount = Math.min(_threadCount, Math.max(1, boardCount));
+        if ( (boardCount < _parallelThreshold) || (threadCount == 1) ) {
+            _generateLayouts(seeds, uniqueSquareCount, layouts, 0, 1);
+            return layouts;
+        }
+
+        final Future<?>[] futures = new Future<?>[threadCount];
+        try {
+            for (int i = 0; i < threadCount; ++i) {
+                final int firstIndex = i;
+                futures[i] = _executorService.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        _generateLayouts(seeds, uniqueSquareCount, layouts, firstIndex, threadCount);
+                    }
+                });
+            }
+
+            for (final Future<?> future : futures) {
+                try {
+                    future.get();
+                }
+                catch (final InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while generating board layouts.", exception);
+                }
+                catch (final ExecutionException exception) {
+                    final Throwable cause = exception.getCause();
+                    if (cause instanceof RuntimeException) { throw (RuntimeException) cause; }
+                    if (cause instanceof Error) { throw (Error) cause; }
+                    throw new RuntimeException("Unable to generate board layouts.", cause);
+                }
+            }
+        }
+        finally {
+            for (final Future<?> future : futures) {
+                if (future != null) {
+                    future.cancel(true);
+                }
+            }
+        }
+
+        return layouts;
+    }
+
+    /**
+     * Stops the generator's threads; the generator must not be used afterward.
+     */
+    public void stop() {
+        _executorService.shutdownNow();
+    }
+}
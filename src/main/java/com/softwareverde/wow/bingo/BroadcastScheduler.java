@@ -0,0 +1,61 @@
+package com.softwareverde.wow.bingo;
+
+import com.softwareverde.logging.Logger;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delays each room's broadcasts by a short, fixed interval, so the changes made within the interval are sent as a single message per WebSocket.
+ *  A single timer thread is shared by every room; it only submits each room's flush to the room's BingoStateEventLoop, which performs the flush.
+ */
+public class BroadcastScheduler {
+    public static final Long DEFAULT_INTERVAL_MS = 25L;
+
+    protected final ScheduledThreadPoolExecutor _executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable);
+            thread.setName("Broadcast Scheduler");
+            thread.setDaemon(true);
+            thread.setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+                @Override
+                public void uncaughtException(final Thread thread, final Throwable exception) {
+                    Logger.error(exception);
+                }
+            });
+            return thread;
+        }
+    });
+
+    protected volatile Long _intervalMs = DEFAULT_INTERVAL_MS;
+
+    /**
+     * Sets the delay between a room's first pending change and its flush; an interval of 0 flushes as soon as possible.
+     */
+    public void setIntervalMs(final Long intervalMs) {
+        _intervalMs = intervalMs;
+    }
+
+    public Long getIntervalMs() {
+        return _intervalMs;
+    }
+
+    /**
+     * Runs the flush once the interval has elapsed; flushes scheduled after BroadcastScheduler::stop are discarded.
+     */
+    public void schedule(final Runnable flush) {
+        try {
+            _executor.schedule(flush, _intervalMs, TimeUnit.MILLISECONDS);
+        }
+        catch (final RejectedExecutionException exception) {
+            Logger.debug("Discarded broadcast flush after shutdown.");
+        }
+    }
+
+    public void stop() {
+        _executor.shutdownNow();
+    }
+}
@@ -0,0 +1,47 @@
+package com.softwareverde.wow.bingo;
+
+import com.softwareverde.json.Json;
+import com.softwareverde.json.Jsonable;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records the time spent encoding broadcast messages and the time spent sending them to each WebSocket.
+ */
+public class BroadcastStatistics implements Jsonable {
+    protected final AtomicLong _recipientCount = new AtomicLong(0L);
+    protected final LatencyHistogram _encodeHistogram = new LatencyHistogram();
+    protected final LatencyHistogram _fanOutHistogram = new LatencyHistogram();
+
+    public void recordBroadcast(final Integer recipientCount, final Long encodeNanoseconds, final Long fanOutNanoseconds) {
+        _recipientCount.addAndGet(recipientCount);
+        _encodeHistogram.record(encodeNanoseconds);
+        _fanOutHistogram.record(fanOutNanoseconds);
+    }
+
+    public Long getBroadcastCount() {
+        return _fanOutHistogram.getCount();
+    }
+
+    public Long getRecipientCount() {
+        return _recipientCount.get();
+    }
+
+    public LatencyHistogram getEncodeHistogram() {
+        return _encodeHistogram;
+    }
+
+    public LatencyHistogram getFanOutHistogram() {
+        return _fanOutHistogram;
+    }
+
+    @Override
+    public Json toJson() {
+        final Json json = new Json(false);
+        json.put("broadcastCount", _fanOutHistogram.getCount());
+        json.put("recipientCount", _recipientCount.get());
+        json.put("encodeNanoseconds", _encodeHistogram);
+        json.put("fanOutNanoseconds", _fanOutHistogram);
+        return json;
+    }
+}
@@ -0,0 +1,130 @@
+package com.softwareverde.wow.bingo;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caches each connected player's serialized gameState messages, so an unchanged board is not rebuilt as Json on every getGameState or broadcast.
+ *  A board's serialization only depends upon its marks, since its layout and seed never change; an entry is therefore reused until
+ *  the player's marks change, and its serialized message fields are additionally reused until the jackpot or version changes.
+ *  Entries are immutable and replaced wholesale, and the map is only accessed while synchronized, so the cache may be used from any thread.
+ *  Entries are evicted when their player's last WebSocket disconnects; once the cache holds maxEntryCount players, the least recently used entry is evicted.
+ */
+public class GameStateCache {
+    public static final Integer DEFAULT_MAX_ENTRY_COUNT = 65536;
+
+    protected static class Entry {
+        public final int marks;
+        public final String gameStateJson;
+        public final Long jackpot;  // The jackpot of gameStateFields.
+        public final Long version;  // The version of gameStateFields.
+        public final String gameStateFields;
+
+        public Entry(final int marks, final String gameStateJson, final Long jackpot, final Long version, final String gameStateFields) {
+            this.marks = marks;
+            this.gameStateJson = gameStateJson;
+            this.jackpot = jackpot;
+            this.version = version;
+            this.gameStateFields = gameStateFields;
+        }
+    }
+
+    protected static String _createGameStateFields(final String gameStateJson, final Long jackpot, final Long version) {
+        // NOTE: Equivalent to the fields of the Json built by WebSocketApi, but composed from the cached gameState without rebuilding it.
+        final StringBuilder stringBuilder = new StringBuilder(gameStateJson.length() + 64);
+        stringBuilder.append("\"gameState\":");
+        stringBuilder.append(gameStateJson);
+        stringBuilder.append(",\"jackpot\":");
+        stringBuilder.append(jackpot);
+        stringBuilder.append(",\"version\":");
+        stringBuilder.append(version);
+        return stringBuilder.toString();
+    }
+
+    protected final LinkedHashMap<Integer, Entry> _entries;
+    protected final Integer _maxEntryCount;
+    protected final BingoMetrics _bingoMetrics;
+
+    /**
+     * Returns the entry for the board's current marks, creating it if necessary.
+     *  The marks are read once, so the returned entry is consistent even if the board is concurrently being marked.
+     */
+    protected Entry _getEntry(final BingoGame bingoGame) {
+        final Integer playerId = bingoGame.getPlayerId();
+        final int marks = bingoGame.getMarks();
+
+        final Entry entry;
+        synchronized (_entries) {
+            entry = _entries.get(playerId);
+        }
+        if ( (entry != null) && (entry.marks == marks) ) {
+            _bingoMetrics.onGameStateCacheHit();
+            return entry;
+        }
+
+        _bingoMetrics.onGameStateCacheMiss();
+        final Entry newEntry = new Entry(marks, bingoGame.toJson(marks).toString(), null, null, null);
+        _putEntry(playerId, newEntry);
+        return newEntry;
+    }
+
+    protected void _putEntry(final Integer playerId, final Entry entry) {
+        synchronized (_entries) {
+            _entries.put(playerId, entry);
+        }
+    }
+
+    public GameStateCache(final BingoMetrics bingoMetrics) {
+        this(bingoMetrics, DEFAULT_MAX_ENTRY_COUNT);
+    }
+
+    public GameStateCache(final BingoMetrics bingoMetrics, final Integer maxEntryCount) {
+        _bingoMetrics = bingoMetrics;
+        _maxEntryCount = maxEntryCount;
+
+        // NOTE: Access-ordered, so the eldest entry is the least recently used...
+        _entries = new LinkedHashMap<Integer, Entry>(16, 0.75F, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Integer, GameStateCache.Entry> eldestEntry) {
+                return (this.size() > _maxEntryCount);
+            }
+        };
+    }
+
+    /**
+     * Returns the serialized "gameState", "jackpot", and "version" fields, without the enclosing braces, so they may be combined with other fields.
+     *  The same String is returned until the board, jackpot, or version changes.
+     */
+    public String getGameStateFields(final BingoGame bingoGame, final Long jackpot, final Long version) {
+        final Entry entry = _getEntry(bingoGame);
+        if ( jackpot.equals(entry.jackpot) && version.equals(entry.version) ) {
+            return entry.gameStateFields;
+        }
+
+        final String gameStateFields = _createGameStateFields(entry.gameStateJson, jackpot, version);
+        _putEntry(bingoGame.getPlayerId(), new Entry(entry.marks, entry.gameStateJson, jackpot, version, gameStateFields));
+        return gameStateFields;
+    }
+
+    /**
+     * Returns the serialized getGameState response, or push if requestId is null, for the player's board.
+     */
+    public String getGameStateMessage(final Integer requestId, final BingoGame bingoGame, final Long jackpot, final Long version) {
+        return ("{\"requestId\":" + requestId + ",\"wasSuccess\":1," + this.getGameStateFields(bingoGame, jackpot, version) + "}");
+    }
+
+    /**
+     * Discards the player's entry; invoked when the player's last WebSocket disconnects.
+     */
+    public void evict(final Integer playerId) {
+        synchronized (_entries) {
+            _entries.remove(playerId);
+        }
+    }
+
+    public Integer getEntryCount() {
+        synchronized (_entries) {
+            return _entries.size();
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.softwareverde.wow.bingo;
+
+import com.softwareverde.logging.Logger;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pings each registered WebSocket once per ping interval, records the round-trip time of its pongs, and reports it as dead once it misses too many pongs.
+ *  Heartbeats are kept on a hashed timer wheel with one revolution per ping interval: each WebSocket is hashed to a fixed slot, and each tick
+ *  only pings the WebSockets within the current slot, so the pings are spread evenly across the interval rather than sent as a single burst.
+ */
+public class HeartbeatManager {
+    public static final Long DEFAULT_PING_INTERVAL_MS = 10000L;
+    public static final Long DEFAULT_TICK_MS = 100L;
+    public static final Integer DEFAULT_MAX_MISSED_PONG_COUNT = 2;
+
+    public interface Listener {
+        /**
+         * Sends the ping to the WebSocket; the WebSocket is expected to echo the nonce as its pong.
+         */
+        void sendPing(Long webSocketId, Long nonce);
+
+        /**
+         * Invoked, from the heartbeat thread, once the WebSocket has missed the maximum number of consecutive pongs; the WebSocket is no longer registered.
+         */
+        void onDeadConnection(Long webSocketId);
+    }
+
+    /**
+     * The heartbeat state of a single WebSocket; synchronized on itself, since pongs arrive on the WebSocket's thread.
+     */
+    protected static class Heartbeat {
+        public final Long webSocketId;
+        public Long pendingNonce = null; // The nonce of the unanswered ping, if any.
+        public long pingNanoTime = 0L;
+        public int missedPongCount = 0;
+
+        public Heartbeat(final Long webSocketId) {
+            this.webSocketId = webSocketId;
+        }
+    }
+
+    protected final Listener _listener;
+    protected final BingoMetrics _bingoMetrics;
+    protected final Long _tickMs;
+    protected final Integer _maxMissedPongCount;
+    protected final ConcurrentHashMap<Long, Heartbeat>[] _wheel; // The heartbeats of each slot, by WebSocket id.
+    protected final ConcurrentHashMap<Long, Heartbeat> _heartbeats = new ConcurrentHashMap<>(); // Every heartbeat, by WebSocket id.
+    protected final AtomicLong _nextNonce = new AtomicLong((long) (Math.random() * Integer.MAX_VALUE));
+    protected int _currentSlot = 0; // Only accessed from the heartbeat thread.
+    protected Thread _thread;
+
+    protected int _getSlot(final Long webSocketId) {
+        // WebSocket ids are sequential, so they are mixed before hashing to avoid neighbouring connections sharing adjacent slots in order.
+        final long mixedId = (webSocketId * 0x9E3779B97F4A7C15L);
+        return (int) Long.remainderUnsigned((mixedId ^ (mixedId >>> 32)), _wheel.length);
+    }
+
+    protected void _tick() {
+        final ConcurrentHashMap<Long, Heartbeat> slot = _wheel[_currentSlot];
+        _currentSlot = ((_currentSlot + 1) % _wheel.length);
+
+        for (final Heartbeat heartbeat : slot.values()) {
+            final Long nonce;
+            synchronized (heartbeat) {
+                if (heartbeat.pendingNonce != null) {
+                    heartbeat.missedPongCount += 1;
+                }
+
+                if (heartbeat.missedPongCount >= _maxMissedPongCount) {
+                    nonce = null;
+                }
+                else {
+                    nonce = _nextNonce.getAndIncrement();
+                    heartbeat.pendingNonce = nonce;
+                    heartbeat.pingNanoTime = System.nanoTime();
+                }
+            }
+
+            if (nonce == null) {
+                this.unregister(heartbeat.webSocketId);
+                _bingoMetrics.onWebSocketEvicted();
+                Logger.debug("Evicting WebSocket " + heartbeat.webSocketId + " after " + _maxMissedPongCount + " missed pongs.");
+                _listener.onDeadConnection(heartbeat.webSocketId);
+                continue;
+            }
+
+            _listener.sendPing(heartbeat.webSocketId, nonce);
+        }
+    }
+
+    public HeartbeatManager(final Listener listener, final BingoMetrics bingoMetrics) {
+        this(listener, bingoMetrics, DEFAULT_PING_INTERVAL_MS, DEFAULT_TICK_MS, DEFAULT_MAX_MISSED_PONG_COUNT);
+    }
+
+    @SuppressWarnings("unchecked")
+    public HeartbeatManager(final Listener listener, final BingoMetrics bingoMetrics, final Long pingIntervalMs, final Long tickMs, final Integer maxMissedPongCount) {
+        _listener = listener;
+        _bingoMetrics = bingoMetrics;
+        _tickMs = tickMs;
+        _maxMissedPongCount = maxMissedPongCount;
+
+        final int slotCount = (int) Math.max(1L, (pingIntervalMs / tickMs));
+        _wheel = new ConcurrentHashMap[slotCount];
+        for (int i = 0; i < slotCount; ++i) {
+            _wheel[i] = new ConcurrentHashMap<>();
+        }
+    }
+
+    public void register(final Long webSocketId) {
+        final Heartbeat heartbeat = new Heartbeat(webSocketId);
+        _heartbeats.put(webSocketId, heartbeat);
+        _wheel[_getSlot(webSocketId)].put(webSocketId, heartbeat);
+    }
+
+    public void unregister(final Long webSocketId) {
+        _heartbeats.remove(webSocketId);
+        _wheel[_getSlot(webSocketId)].remove(webSocketId);
+    }
+
+    /**
+     * Records the WebSocket's pong; pongs that do not answer the WebSocket's most recent ping are ignored.
+     */
+    public void onPong(final Long webSocketId, final Long nonce) {
+        final Heartbeat heartbeat = _heartbeats.get(webSocketId);
+        if ( (heartbeat == null) || (nonce == null) ) { return; }
+
+        final long roundTripNanoseconds;
+        synchronized (heartbeat) {
+            if (! nonce.equals(heartbeat.pendingNonce)) { return; }
+
+            roundTripNanoseconds = (System.nanoTime() - heartbeat.pingNanoTime);
+            heartbeat.pendingNonce = null;
+            heartbeat.missedPongCount = 0;
+        }
+        _bingoMetrics.getPongRoundTripHistogram().record(roundTripNanoseconds);
+    }
+
+    public void start() {
+        _thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                final Thread thread = Thread.currentThread();
+                long nextTickTime = System.currentTimeMillis();
+                while (! thread.isInterrupted()) {
+                    nextTickTime += _tickMs;
+                    final long sleepMs = (nextTickTime - System.currentTimeMillis());
+                    if (sleepMs > 0L) {
+                        try { Thread.sleep(sleepMs); }
+                        catch (final InterruptedException exception) { break; }
+                    }
+
+                    _tick();
+                }
+            }
+        });
+        _thread.setName("WebSocket Heartbeat Thread");
+        _thread.setDaemon(true);
+        _thread.setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+            @Override
+            public void uncaughtException(final Thread thread, final Throwable exception) {
+                Logger.error(exception);
+            }
+        });
+        _thread.start();
+    }
+
+    public void stop() {
+        if (_thread == null) { return; }
+
+        _thread.interrupt();
+        try { _thread.join(5000L); } catch (final InterruptedException exception) { }
+        _thread = null;
+    }
+}
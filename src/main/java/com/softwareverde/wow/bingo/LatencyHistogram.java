@@ -0,0 +1,105 @@
+package com.softwareverde.wow.bingo;
+
+import com.softwareverde.json.Json;
+import com.softwareverde.json.Jsonable;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free, fixed-size histogram of nanosecond durations.
+ *  Values are bucketed log-linearly: each power of two is split into 8 sub-buckets, so reported percentiles are within 12.5% of the recorded value.
+ *  Recording is a few atomic increments and never allocates.
+ */
+public class LatencyHistogram implements Jsonable {
+    protected static final int LINEAR_BUCKET_COUNT = 16;
+    protected static final int SUB_BUCKET_BITS = 3;
+    protected static final int SUB_BUCKET_COUNT = (1 << SUB_BUCKET_BITS);
+    protected static final int BUCKET_COUNT = (LINEAR_BUCKET_COUNT + ((63 - 4) * SUB_BUCKET_COUNT));
+
+    protected static int _getBucketIndex(final long value) {
+        if (value < LINEAR_BUCKET_COUNT) { return (int) Math.max(0L, value); }
+
+        final int highestBit = (63 - Long.numberOfLeadingZeros(value));
+        final int subBucket = (int) ((value >>> (highestBit - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1));
+        return (LINEAR_BUCKET_COUNT + ((highestBit - 4) * SUB_BUCKET_COUNT) + subBucket);
+    }
+
+    /**
+     * Returns the largest value that is recorded within the bucket.
+     */
+    protected static long _getBucketUpperBound(final int bucketIndex) {
+        if (bucketIndex < LINEAR_BUCKET_COUNT) { return bucketIndex; }
+
+        final int highestBit = (((bucketIndex - LINEAR_BUCKET_COUNT) / SUB_BUCKET_COUNT) + 4);
+        final int subBucket = ((bucketIndex - LINEAR_BUCKET_COUNT) % SUB_BUCKET_COUNT);
+        final int shift = (highestBit - SUB_BUCKET_BITS);
+        final long lowerBound = (((long) (SUB_BUCKET_COUNT + subBucket)) << shift);
+        return (lowerBound + ((1L << shift) - 1L));
+    }
+
+    protected final AtomicLongArray _buckets = new AtomicLongArray(BUCKET_COUNT);
+    protected final AtomicLong _count = new AtomicLong(0L);
+    protected final AtomicLong _sum = new AtomicLong(0L);
+    protected final AtomicLong _max = new AtomicLong(0L);
+
+    public void record(final long nanoseconds) {
+        final long value = Math.max(0L, nanoseconds);
+        _buckets.incrementAndGet(_getBucketIndex(value));
+        _count.incrementAndGet();
+        _sum.addAndGet(value);
+
+        long max = _max.get();
+        while (value > max) {
+            if (_max.compareAndSet(max, value)) { break; }
+            max = _max.get();
+        }
+    }
+
+    /**
+     * Records the time elapsed since startNanoTime, as returned by System::nanoTime.
+     */
+    public void recordSince(final long startNanoTime) {
+        this.record(System.nanoTime() - startNanoTime);
+    }
+
+    public Long getCount() {
+        return _count.get();
+    }
+
+    public Long getMax() {
+        return _max.get();
+    }
+
+    /**
+     * Returns the (approximate) value at the percentile, between 0.0 and 1.0.
+     */
+    public Long getPercentile(final Double percentile) {
+        final long count = _count.get();
+        if (count == 0L) { return 0L; }
+
+        final long targetCount = Math.max(1L, (long) Math.ceil(percentile * count));
+        long cumulativeCount = 0L;
+        for (int i = 0; i < BUCKET_COUNT; ++i) {
+            cumulativeCount += _buckets.get(i);
+            if (cumulativeCount >= targetCount) {
+                return Math.min(_getBucketUpperBound(i), _max.get());
+            }
+        }
+        return _max.get();
+    }
+
+    @Override
+    public Json toJson() {
+        final long count = _count.get();
+
+        final Json json = new Json(false);
+        json.put("count", count);
+        json.put("mean", (count > 0L ? (_sum.get() / count) : 0L));
+        json.put("p50", this.getPercentile(0.50D));
+        json.put("p90", this.getPercentile(0.90D));
+        json.put("p99", this.getPercentile(0.99D));
+        json.put("max", _max.get());
+        return json;
+    }
+}
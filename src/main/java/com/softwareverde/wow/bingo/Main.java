@@ -9,53 +9,221 @@ import com.softwareverde.util.IoUtil;
 import com.softwareverde.util.StringUtil;
 import com.softwareverde.util.Util;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
 public class Main {
-    public static void main(final String[] parameters) {
-        Logger.setLog(LineNumberAnnotatedLog.getInstance());
-        Logger.setLogLevel(LogLevel.DEBUG);
+    protected static final File DATA_DIRECTORY = new File("data");
+    protected static final File ROOMS_DIRECTORY = new File(DATA_DIRECTORY, "rooms");
+    protected static final String DEFAULT_REPLICATION_ADDRESS = "127.0.0.1";
 
-        final String adminPassword = (parameters.length > 0 ? parameters[0] : "");
-        final Integer ticketCost;
-        {
-            if (parameters.length > 1) {
-                ticketCost = Util.parseInt(parameters[1]);
-            }
-            else {
-                ticketCost = 5;
-            }
+    /**
+     * Returns the lines of the file, or null if the file does not exist.
+     */
+    protected static List<String> _readLines(final File file, final Boolean shouldSkipBlankLines) {
+        if (! file.exists()) { return null; }
+
+        final String contents = StringUtil.bytesToString(IoUtil.getFileContents(file.getPath()));
+        final String[] lines = contents.split("\n");
+        final ImmutableListBuilder<String> listBuilder = new ImmutableListBuilder<>(lines.length);
+        for (final String line : lines) {
+            if (shouldSkipBlankLines && Util.isBlank(line)) { continue; }
+            listBuilder.add(line);
         }
+        return listBuilder.build();
+    }
+
+    /**
+     * Adds the room defined by the directory's squares.dat, and optional roster.dat and password.dat, to the server.
+     *  The room's journal, snapshot, and audit log are kept within the same directory; an existing journal determines the room's seed and ticket cost.
+     *  Returns false if the room could not be added.
+     */
+    protected static Boolean _addRoom(final BingoServer bingoServer, final String roomId, final File directory, final String defaultAdminPassword, final Integer defaultTicketCost, final Long defaultSeed) {
+        final File journalFile = new File(directory, "journal.dat");
+        final File snapshotFile = new File(directory, "snapshot.dat");
+        final BingoJournal.Header journalHeader = BingoJournal.readHeader(journalFile);
+
+        final Integer ticketCost = (journalHeader != null ? journalHeader.ticketCost : defaultTicketCost);
         final Long seed;
         {
-            if (parameters.length > 2) {
-                seed = Util.parseLong(parameters[2]);
+            if (journalHeader != null) {
+                seed = journalHeader.seed;
+            }
+            else if (defaultSeed != null) {
+                seed = defaultSeed;
             }
             else {
                 seed = Math.abs((long) (Integer.MAX_VALUE * Math.random()));
             }
         }
 
-        final List<String> bingoSquares;
+        final String adminPassword;
         {
-            final String squaresDatContents = StringUtil.bytesToString(IoUtil.getFileContents("data/squares.dat"));
-            final String[] squares = squaresDatContents.split("\n");
-            final ImmutableListBuilder<String> listBuilder = new ImmutableListBuilder<>(squares.length);
-            for (final String string : squares) {
-                listBuilder.add(string);
+            final List<String> passwordLines = _readLines(new File(directory, "password.dat"), true);
+            if ( (passwordLines != null) && (! passwordLines.isEmpty()) ) {
+                adminPassword = passwordLines.get(0).trim();
+            }
+            else {
+                adminPassword = defaultAdminPassword;
             }
-            bingoSquares = listBuilder.build();
         }
 
+        final List<String> bingoSquares = _readLines(new File(directory, "squares.dat"), false);
+        if (bingoSquares == null) {
+            Logger.error("[" + roomId + ": Missing squares.dat]");
+            return false;
+        }
+        final List<String> roster = _readLines(new File(directory, "roster.dat"), true);
+
         if (! Util.isBlank(adminPassword)) {
-            Logger.info("[Password protected]");
+            Logger.info("[" + roomId + ": Password protected]");
+        }
+        Logger.info("[" + roomId + ": Ticket Cost " + ticketCost + "]");
+        Logger.info("[" + roomId + ": Seed " + seed + "]");
+        Logger.info("[" + roomId + ": Loaded " + bingoSquares.getCount() + " squares]");
+        if (roster != null) {
+            Logger.info("[" + roomId + ": Loaded " + roster.getCount() + " rostered players]");
+        }
+        if (journalHeader != null) {
+            Logger.info("[" + roomId + ": Recovering from " + journalFile.getPath() + "]");
+        }
+
+        final BingoJournal journal;
+        try {
+            journal = new BingoJournal(journalFile, new BingoJournal.Header(seed, ticketCost, bingoSquares.getCount()));
+        }
+        catch (final IOException exception) {
+            Logger.error("Unable to open journal; delete " + journalFile.getPath() + " to begin a new game.", exception);
+            return false;
+        }
+
+        final BingoRoom bingoRoom = bingoServer.addRoom(roomId, bingoSquares, ticketCost, seed, adminPassword, roster);
+        bingoRoom.setJournal(journal);
+        bingoRoom.setSnapshotFile(snapshotFile, BingoRoom.DEFAULT_SNAPSHOT_INTERVAL_MS);
+        bingoRoom.setAuditLogFile(new File(directory, "audit.log"));
+        return true;
+    }
+
+    /**
+     * Adds a read-only replica of each room, streamed from the primary node at "host:port".
+     *  Returns false if the primary could not be reached or does not own one of the rooms.
+     */
+    protected static Boolean _addReplicaRooms(final BingoServer bingoServer, final String primaryAddress, final String secret, final String[] roomIds) {
+        final int separatorIndex = primaryAddress.lastIndexOf(':');
+        if (separatorIndex < 0) {
+            Logger.error("Invalid primary address: " + primaryAddress);
+            return false;
+        }
+        final String host = primaryAddress.substring(0, separatorIndex);
+        final Integer port = Util.parseInt(primaryAddress.substring(separatorIndex + 1));
+
+        for (final String roomId : roomIds) {
+            final ReplicaClient replicaClient = new ReplicaClient(host, port, roomId.trim(), secret);
+            try {
+                replicaClient.connect();
+            }
+            catch (final IOException exception) {
+                Logger.error("Unable to replicate room " + roomId + " from " + primaryAddress + ".", exception);
+                return false;
+            }
+
+            bingoServer.addReplicaRoom(replicaClient);
+            Logger.info("[" + roomId + ": Replicating from " + primaryAddress + "]");
+        }
+        return true;
+    }
+
+    /**
+     * Options are of the form --name=value and may appear anywhere; the remaining parameters are positional.
+     *  --port=8080                      The port the HTTP and WebSocket server listens on.
+     *  --replication-port=PORT          Makes this node a primary, streaming its rooms to edge nodes that connect to PORT.
+     *  --replication-address=127.0.0.1  The address a primary listens on for edge nodes; defaults to loopback.
+     *  --replication-secret=SECRET      The secret shared by a primary and its edges; required by both.
+     *  --primary=HOST:PORT              Makes this node an edge, serving read-only replicas of the primary's rooms instead of its own data directory.
+     *  --rooms=default,ROOM_ID,...      The rooms an edge replicates; defaults to the default room.
+     *  --watch-static                   Reloads the static content whenever the www directory changes.
+     *  --broadcast-interval-ms=25       How long game state, player list, and winner broadcasts are delayed so that bursts of changes are sent together.
+     */
+    public static void main(final String[] arguments) {
+        Logger.setLog(LineNumberAnnotatedLog.getInstance());
+        Logger.setLogLevel(LogLevel.DEBUG);
+
+        final HashMap<String, String> options = new HashMap<>();
+        final ArrayList<String> positionalParameters = new ArrayList<>();
+        for (final String argument : arguments) {
+            if (argument.startsWith("--")) {
+                final int separatorIndex = argument.indexOf('=');
+                final String name = (separatorIndex < 0 ? argument.substring(2) : argument.substring(2, separatorIndex));
+                final String value = (separatorIndex < 0 ? "" : argument.substring(separatorIndex + 1));
+                options.put(name, value);
+            }
+            else {
+                positionalParameters.add(argument);
+            }
+        }
+        final String[] parameters = positionalParameters.toArray(new String[0]);
+
+        final String adminPassword = (parameters.length > 0 ? parameters[0] : "");
+        final Integer ticketCost = (parameters.length > 1 ? Util.parseInt(parameters[1]) : 5);
+        final Long seed = (parameters.length > 2 ? Util.parseLong(parameters[2]) : null);
+        final Integer port = (options.containsKey("port") ? Util.parseInt(options.get("port")) : 8080);
+        final String primaryAddress = options.get("primary");
+
+        final BingoServer bingoServer = new BingoServer();
+        bingoServer.setPort(port);
+        bingoServer.setStaticContentWatchEnabled(options.containsKey("watch-static"));
+        if (options.containsKey("broadcast-interval-ms")) {
+            bingoServer.setBroadcastIntervalMs(Util.parseLong(options.get("broadcast-interval-ms")));
+        }
+
+        final String replicationSecret = options.get("replication-secret");
+        final boolean isReplicated = ( (primaryAddress != null) || options.containsKey("replication-port") );
+        if ( isReplicated && Util.isBlank(replicationSecret) ) {
+            Logger.error("--replication-secret is required by primary and edge nodes.");
+            return;
+        }
+
+        if (primaryAddress != null) {
+            final String roomIds = Util.coalesce(options.get("rooms"), BingoRoom.DEFAULT_ROOM_ID);
+            if (! _addReplicaRooms(bingoServer, primaryAddress, replicationSecret, roomIds.split(","))) { return; }
+        }
+        else {
+            if (options.containsKey("replication-port")) {
+                final String replicationAddress = Util.coalesce(options.get("replication-address"), DEFAULT_REPLICATION_ADDRESS);
+                bingoServer.setReplicationPort(replicationAddress, Util.parseInt(options.get("replication-port")), replicationSecret);
+            }
+
+            // The default room is defined by the files directly within the data directory...
+            if (! _addRoom(bingoServer, BingoRoom.DEFAULT_ROOM_ID, DATA_DIRECTORY, adminPassword, ticketCost, seed)) { return; }
+
+            // Additional rooms are defined by the subdirectories of data/rooms, each named by its room id...
+            final File[] roomDirectories = ROOMS_DIRECTORY.listFiles();
+            if (roomDirectories != null) {
+                Arrays.sort(roomDirectories);
+                for (final File roomDirectory : roomDirectories) {
+                    if (! roomDirectory.isDirectory()) { continue; }
+
+                    final String roomId = roomDirectory.getName();
+                    if ( (! BingoRoom.isValidRoomId(roomId)) || BingoRoom.DEFAULT_ROOM_ID.equals(roomId) ) {
+                        Logger.info("[Skipping invalid room: " + roomId + "]");
+                        continue;
+                    }
+
+                    if (! _addRoom(bingoServer, roomId, roomDirectory, adminPassword, ticketCost, seed)) { return; }
+                }
+            }
         }
-        Logger.info("[Ticket Cost " + ticketCost + "]");
-        Logger.info("[Seed " + seed + "]");
-        Logger.info("[Loaded " + bingoSquares.getCount() + " squares]");
 
-        final BingoServer bingoServer = new BingoServer(bingoSquares, ticketCost, seed, adminPassword);
         bingoServer.start();
 
-        Logger.info("[Listening on port 8080]");
+        Logger.info("[Listening on port " + port + "]");
+        final Integer replicationPort = bingoServer.getReplicationPort();
+        if (replicationPort != null) {
+            Logger.info("[Replicating on port " + replicationPort + "]");
+        }
         bingoServer.loop();
 
         Logger.info("[Exiting]");
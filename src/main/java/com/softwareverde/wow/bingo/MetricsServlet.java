@@ -0,0 +1,22 @@
+package com.softwareverde.wow.bingo;
+
+import com.softwareverde.http.server.servlet.Servlet;
+import com.softwareverde.http.server.servlet.request.Request;
+import com.softwareverde.http.server.servlet.response.JsonResponse;
+import com.softwareverde.http.server.servlet.response.Response;
+
+/**
+ * Serves a JSON snapshot of the BingoMetrics.
+ */
+public class MetricsServlet implements Servlet {
+    protected final BingoMetrics _bingoMetrics;
+
+    public MetricsServlet(final BingoMetrics bingoMetrics) {
+        _bingoMetrics = bingoMetrics;
+    }
+
+    @Override
+    public Response onRequest(final Request request) {
+        return new JsonResponse(Response.Codes.OK, _bingoMetrics);
+    }
+}
@@ -0,0 +1,181 @@
+package com.softwareverde.wow.bingo;
+
+import com.softwareverde.concurrent.threadpool.CachedThreadPool;
+import com.softwareverde.http.websocket.WebSocket;
+import com.softwareverde.logging.Logger;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * A bounded queue of messages waiting to be sent to a single WebSocket.
+ *  Messages are sent by the thread pool, so a slow client only delays its own messages.
+ *  When a message is enqueued with a coalesce key, any queued message with the same key is stale and is discarded.
+ *  If the queue is full and nothing can be discarded then the client is considered hopeless and is disconnected.
+ */
+public class OutboundQueue {
+    public static final Integer DEFAULT_CAPACITY = 128;
+
+    protected static class OutboundMessage {
+        public final String payload;
+        public final byte[] binaryPayload; // Set instead of payload for binary messages.
+        public final String coalesceKey;
+
+        public OutboundMessage(final String payload, final byte[] binaryPayload, final String coalesceKey) {
+            this.payload = payload;
+            this.binaryPayload = binaryPayload;
+            this.coalesceKey = coalesceKey;
+        }
+    }
+
+    protected final WebSocket _webSocket;
+    protected final CachedThreadPool _threadPool;
+    protected final BingoMetrics _bingoMetrics;
+    protected final Integer _capacity;
+    protected final ArrayDeque<OutboundMessage> _messages;
+    protected final Runnable _drainRunnable = new Runnable() {
+        @Override
+        public void run() {
+            _drain();
+        }
+    };
+
+    protected boolean _isDraining = false; // Synchronized by _messages.
+    protected volatile Boolean _isClosed = false;
+
+    protected void _drain() {
+        while (true) {
+            final OutboundMessage message;
+            synchronized (_messages) {
+                message = _messages.pollFirst();
+                if ( (message == null) || _isClosed ) {
+                    _clearMessages();
+                    _isDraining = false;
+                    return;
+                }
+            }
+
+            try {
+                if (message.binaryPayload != null) {
+                    _webSocket.sendMessage(message.binaryPayload);
+                    _bingoMetrics.onMessageSent(message.binaryPayload.length);
+                }
+                else {
+                    _webSocket.sendMessage(message.payload);
+                    _bingoMetrics.onMessageSent(message.payload.length());
+                }
+            }
+            catch (final Exception exception) {
+                Logger.debug(exception);
+            }
+        }
+    }
+
+    /**
+     * Must be invoked while synchronized on _messages.
+     */
+    protected void _clearMessages() {
+        final int droppedMessageCount = _messages.size();
+        for (int i = 0; i < droppedMessageCount; ++i) {
+            _bingoMetrics.onMessageDropped();
+        }
+        _messages.clear();
+    }
+
+    protected void _disconnect() {
+        _isClosed = true;
+
+        // NOTE: The WebSocket is closed asynchronously since closing may block and invokes the close callback on the enqueuing thread.
+        _threadPool.execute(new Runnable() {
+            @Override
+            public void run() {
+                _webSocket.close();
+            }
+        });
+    }
+
+    public OutboundQueue(final WebSocket webSocket, final CachedThreadPool threadPool, final BingoMetrics bingoMetrics) {
+        this(webSocket, threadPool, bingoMetrics, DEFAULT_CAPACITY);
+    }
+
+    public OutboundQueue(final WebSocket webSocket, final CachedThreadPool threadPool, final BingoMetrics bingoMetrics, final Integer capacity) {
+        _webSocket = webSocket;
+        _threadPool = threadPool;
+        _bingoMetrics = bingoMetrics;
+        _capacity = capacity;
+        _messages = new ArrayDeque<>(capacity);
+    }
+
+    /**
+     * Queues the message to be sent to the WebSocket.
+     *  If coalesceKey is not null, then any queued message with the same coalesceKey is replaced by this message.
+     *  Returns false if the message could not be queued, in which case the WebSocket is disconnected.
+     */
+    public Boolean enqueue(final String payload, final String coalesceKey) {
+        return _enqueue(new OutboundMessage(payload, null, coalesceKey));
+    }
+
+    /**
+     * Queues the message to be sent to the WebSocket as a binary frame; otherwise identical to OutboundQueue::enqueue(String, String).
+     */
+    public Boolean enqueue(final byte[] binaryPayload, final String coalesceKey) {
+        return _enqueue(new OutboundMessage(null, binaryPayload, coalesceKey));
+    }
+
+    protected Boolean _enqueue(final OutboundMessage message) {
+        if (_isClosed) { return false; }
+
+        final String coalesceKey = message.coalesceKey;
+
+        final boolean shouldStartDraining;
+        synchronized (_messages) {
+            if (coalesceKey != null) {
+                final Iterator<OutboundMessage> iterator = _messages.iterator();
+                while (iterator.hasNext()) {
+                    final OutboundMessage queuedMessage = iterator.next();
+                    if (coalesceKey.equals(queuedMessage.coalesceKey)) {
+                        iterator.remove();
+                        _bingoMetrics.onMessageDropped();
+                        break;
+                    }
+                }
+            }
+
+            if (_messages.size() >= _capacity) {
+                Logger.info("Disconnecting WebSocket " + _webSocket.getId() + ": outbound queue is full.");
+                _clearMessages();
+                _bingoMetrics.onMessageDropped();
+                _disconnect();
+                return false;
+            }
+
+            _messages.addLast(message);
+
+            shouldStartDraining = (! _isDraining);
+            _isDraining = true;
+        }
+
+        if (shouldStartDraining) {
+            _threadPool.execute(_drainRunnable);
+        }
+
+        return true;
+    }
+
+    public Integer getQueuedMessageCount() {
+        synchronized (_messages) {
+            return _messages.size();
+        }
+    }
+
+    /**
+     * Discards any queued messages and prevents future messages from being queued.
+     *  The WebSocket itself is not closed.
+     */
+    public void close() {
+        _isClosed = true;
+        synchronized (_messages) {
+            _clearMessages();
+        }
+    }
+}
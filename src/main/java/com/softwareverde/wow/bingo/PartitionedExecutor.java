@@ -0,0 +1,112 @@
+package com.softwareverde.wow.bingo;
+
+import com.softwareverde.logging.Logger;
+
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * A fixed set of single-threaded partitions.  Each room is pinned to one partition, so a room's commands are always applied
+ *  by the same thread and in the order they were submitted, while different rooms are spread across the partitions' threads.
+ *  Partitions share nothing, so a busy room only delays the rooms pinned to the same partition.
+ */
+public class PartitionedExecutor {
+    /**
+     * A single thread that runs its queued tasks in order.
+     */
+    public static class Partition {
+        protected final LinkedBlockingQueue<Runnable> _queuedTasks = new LinkedBlockingQueue<>();
+        protected final Thread _thread;
+
+        public Partition(final String name) {
+            _thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    final Thread thread = Thread.currentThread();
+                    while (! thread.isInterrupted()) {
+                        final Runnable runnable;
+                        try {
+                            runnable = _queuedTasks.take();
+                        }
+                        catch (final InterruptedException exception) { break; }
+
+                        try {
+                            runnable.run();
+                        }
+                        catch (final Exception exception) {
+                            Logger.error(exception);
+                        }
+                    }
+                }
+            });
+            _thread.setName(name);
+            _thread.setDaemon(false);
+            _thread.setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+                @Override
+                public void uncaughtException(final Thread thread, final Throwable exception) {
+                    Logger.error(exception);
+                }
+            });
+        }
+
+        public void execute(final Runnable runnable) {
+            _queuedTasks.add(runnable);
+        }
+
+        /**
+         * Returns true if the current thread is the partition's thread.
+         */
+        public Boolean isPartitionThread() {
+            return (Thread.currentThread() == _thread);
+        }
+
+        public Integer getQueuedTaskCount() {
+            return _queuedTasks.size();
+        }
+
+        public void start() {
+            _thread.start();
+        }
+
+        public void stop() {
+            _thread.interrupt();
+            try { _thread.join(5000L); } catch (final InterruptedException exception) { }
+        }
+    }
+
+    protected final Partition[] _partitions;
+
+    public PartitionedExecutor() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public PartitionedExecutor(final Integer partitionCount) {
+        _partitions = new Partition[Math.max(1, partitionCount)];
+        for (int i = 0; i < _partitions.length; ++i) {
+            _partitions[i] = new Partition("BingoState Event Loop " + i);
+        }
+    }
+
+    /**
+     * Returns the partition the key is pinned to; the same key always returns the same partition.
+     */
+    public Partition getPartition(final String key) {
+        final int partitionIndex = Math.floorMod(key.hashCode(), _partitions.length);
+        return _partitions[partitionIndex];
+    }
+
+    public Integer getPartitionCount() {
+        return _partitions.length;
+    }
+
+    public void start() {
+        for (final Partition partition : _partitions) {
+            partition.start();
+        }
+    }
+
+    public void stop() {
+        for (final Partition partition : _partitions) {
+            partition.stop();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.softwareverde.wow.bingo;
+
+import com.softwareverde.constable.list.List;
+import com.softwareverde.constable.list.mutable.MutableList;
+
+import java.util.HashMap;
+
+/**
+ * Assigns each player a dense integer id, in order of registration, starting at zero.
+ *  Player ids are never reused, so they may be used as list indexes for per-player state.
+ */
+public class PlayerRegistry {
+    protected final HashMap<String, Integer> _playerIds = new HashMap<>();
+    protected final MutableList<String> _playerNames = new MutableList<>();
+
+    /**
+     * Returns the id of the player, registering the player if it does not already exist.
+     */
+    public Integer registerPlayer(final String playerName) {
+        final Integer existingPlayerId = _playerIds.get(playerName);
+        if (existingPlayerId != null) { return existingPlayerId; }
+
+        final Integer playerId = _playerNames.getCount();
+        _playerNames.add(playerName);
+        _playerIds.put(playerName, playerId);
+        return playerId;
+    }
+
+    /**
+     * Returns the id of the player, or null if the player has not been registered.
+     */
+    public Integer getPlayerId(final String playerName) {
+        return _playerIds.get(playerName);
+    }
+
+    public String getPlayerName(final Integer playerId) {
+        if ( (playerId == null) || (playerId < 0) || (playerId >= _playerNames.getCount()) ) { return null; }
+        return _playerNames.get(playerId);
+    }
+
+    public Boolean isRegistered(final String playerName) {
+        return _playerIds.containsKey(playerName);
+    }
+
+    public Integer getPlayerCount() {
+        return _playerNames.getCount();
+    }
+
+    public List<String> getPlayerNames() {
+        return _playerNames.asConst();
+    }
+}
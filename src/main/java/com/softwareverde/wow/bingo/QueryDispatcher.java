@@ -0,0 +1,378 @@
+package com.softwareverde.wow.bingo;
+
+import com.softwareverde.http.websocket.WebSocket;
+import com.softwareverde.json.Json;
+import com.softwareverde.logging.Logger;
+
+import java.util.HashMap;
+
+/**
+ * Routes inbound WebSocket frames to the Handler registered for their query.
+ *  Frames are not parsed into a Json tree; the frame's top-level members are located by a single scan, the query is looked up within the
+ *  table of handlers, and only the parameters the handler declared are parsed.  Pongs are answered without any parsing, and unknown or
+ *  malformed requests, and requests missing a declared parameter or providing one of the wrong type, are rejected before anything is parsed.  Each query's handling time is recorded within the BingoMetrics.
+ *  Handlers must be registered before the first frame is dispatched.
+ */
+public class QueryDispatcher {
+    public static final String UNKNOWN_QUERY_ERROR = "Unknown query.";
+    public static final String MALFORMED_REQUEST_ERROR = "Malformed request.";
+    public static final String INVALID_PARAMETER_ERROR = "Missing or invalid parameter: ";
+
+    public enum ParameterType {
+        STRING, INTEGER, BOOLEAN, ARRAY
+    }
+
+    /**
+     * A parameter read by a Handler; every declared parameter must be present, non-null, and of its type.
+     *  Booleans may be provided as either true/false or as an integer.
+     */
+    public static class Parameter {
+        public final String name;
+        public final ParameterType type;
+
+        public Parameter(final String name, final ParameterType type) {
+            this.name = name;
+            this.type = type;
+        }
+    }
+
+    public interface Handler {
+        void handle(QueryRequest request, WebSocket webSocket);
+    }
+
+    public interface Listener {
+        void onPong(WebSocket webSocket, Long nonce);
+
+        /**
+         * Invoked for unknown queries and malformed frames; requestId is null if it could not be read.
+         */
+        void onInvalidRequest(WebSocket webSocket, Integer requestId, String errorMessage);
+    }
+
+    protected static class Route {
+        public final Handler handler;
+        public final Parameter[] parameters;
+        public final String[] parameterNames;
+        public final LatencyHistogram histogram;
+
+        public Route(final Handler handler, final Parameter[] parameters, final LatencyHistogram histogram) {
+            this.handler = handler;
+            this.parameters = parameters;
+            this.parameterNames = new String[parameters.length];
+            for (int i = 0; i < parameters.length; ++i) {
+                this.parameterNames[i] = parameters[i].name;
+            }
+            this.histogram = histogram;
+        }
+    }
+
+    // The indexes of the top-level members' spans, as located by _scanObject.
+    protected static final String[] FRAME_MEMBER_NAMES = { "query", "requestId", "parameters", "pong" };
+    protected static final int QUERY = 0;
+    protected static final int REQUEST_ID = 1;
+    protected static final int PARAMETERS = 2;
+    protected static final int PONG = 3;
+
+    protected static int _skipWhitespace(final String text, int index, final int endIndex) {
+        while ( (index < endIndex) && (text.charAt(index) <= ' ') ) {
+            index += 1;
+        }
+        return index;
+    }
+
+    /**
+     * Returns the index after the closing quote of the string beginning at index, or -1 if the string is not terminated.
+     */
+    protected static int _skipString(final String text, int index, final int endIndex) {
+        index += 1; // The opening quote.
+        while (index < endIndex) {
+            final char c = text.charAt(index);
+            if (c == '"') { return (index + 1); }
+            index += ((c == '\\') ? 2 : 1);
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the index after the value beginning at index, or -1 if the value is not terminated.
+     *  Nested objects and arrays are skipped by depth without being validated; only the members that are later parsed are validated.
+     */
+    protected static int _skipValue(final String text, int index, final int endIndex) {
+        if (index >= endIndex) { return -1; }
+
+        final char firstCharacter = text.charAt(index);
+        if (firstCharacter == '"') {
+            return _skipString(text, index, endIndex);
+        }
+
+        if ( (firstCharacter == '{') || (firstCharacter == '[') ) {
+            int depth = 0;
+            while (index < endIndex) {
+                final char c = text.charAt(index);
+                if (c == '"') {
+                    index = _skipString(text, index, endIndex);
+                    if (index < 0) { return -1; }
+                    continue;
+                }
+
+                if ( (c == '{') || (c == '[') ) {
+                    depth += 1;
+                }
+                else if ( (c == '}') || (c == ']') ) {
+                    depth -= 1;
+                    if (depth == 0) { return (index + 1); }
+                }
+                index += 1;
+            }
+            return -1;
+        }
+
+        // Numbers, booleans, and null...
+        final int startIndex = index;
+        while (index < endIndex) {
+            final char c = text.charAt(index);
+            if ( (c == ',') || (c == '}') || (c == ']') || (c <= ' ') ) { break; }
+            index += 1;
+        }
+        return (index > startIndex ? index : -1);
+    }
+
+    /**
+     * Scans the object between startIndex and endIndex, storing the [start, end) span of each member named within memberNames into spans,
+     *  at (2 * i) and (2 * i + 1); the spans of absent members are left as -1.  Returns false if the object is malformed.
+     */
+    protected static boolean _scanObject(final String text, final int startIndex, final int endIndex, final String[] memberNames, final int[] spans) {
+        for (int i = 0; i < spans.length; ++i) {
+            spans[i] = -1;
+        }
+
+        int index = _skipWhitespace(text, startIndex, endIndex);
+        if ( (index >= endIndex) || (text.charAt(index) != '{') ) { return false; }
+        index = _skipWhitespace(text, (index + 1), endIndex);
+        if ( (index < endIndex) && (text.charAt(index) == '}') ) { return true; }
+
+        while (index < endIndex) {
+            if (text.charAt(index) != '"') { return false; }
+            final int keyStartIndex = (index + 1);
+            index = _skipString(text, index, endIndex);
+            if (index < 0) { return false; }
+            final int keyLength = (index - 1 - keyStartIndex);
+
+            index = _skipWhitespace(text, index, endIndex);
+            if ( (index >= endIndex) || (text.charAt(index) != ':') ) { return false; }
+            index = _skipWhitespace(text, (index + 1), endIndex);
+
+            final int valueStartIndex = index;
+            index = _skipValue(text, index, endIndex);
+            if (index < 0) { return false; }
+
+            for (int i = 0; i < memberNames.length; ++i) {
+                final String memberName = memberNames[i];
+                if ( (memberName.length() == keyLength) && text.regionMatches(keyStartIndex, memberName, 0, keyLength) ) {
+                    spans[2 * i] = valueStartIndex;
+                    spans[(2 * i) + 1] = index;
+                    break;
+                }
+            }
+
+            index = _skipWhitespace(text, index, endIndex);
+            if (index >= endIndex) { return false; }
+            final char separator = text.charAt(index);
+            if (separator == '}') { return true; }
+            if (separator != ',') { return false; }
+            index = _skipWhitespace(text, (index + 1), endIndex);
+        }
+        return false;
+    }
+
+    protected static boolean _isNull(final String text, final int startIndex, final int endIndex) {
+        return ( ((endIndex - startIndex) == 4) && text.startsWith("null", startIndex) );
+    }
+
+    /**
+     * Returns the integer within the span, or null if the span is null or is not an integer.
+     */
+    protected static Long _parseLong(final String text, final int startIndex, final int endIndex) {
+        if (_isNull(text, startIndex, endIndex)) { return null; }
+
+        try {
+            return Long.parseLong(text.substring(startIndex, endIndex));
+        }
+        catch (final NumberFormatException exception) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns true if the span is a value of the type; null is never a value of any type.
+     */
+    protected static boolean _isType(final String text, final int startIndex, final int endIndex, final ParameterType type) {
+        final char firstCharacter = text.charAt(startIndex);
+        switch (type) {
+            case STRING: { return (firstCharacter == '"'); }
+            case ARRAY: { return (firstCharacter == '['); }
+            case INTEGER: {
+                final Long value = _parseLong(text, startIndex, endIndex);
+                return ( (value != null) && (value >= Integer.MIN_VALUE) && (value <= Integer.MAX_VALUE) );
+            }
+            case BOOLEAN: {
+                final int length = (endIndex - startIndex);
+                if ( (length == 4) && text.startsWith("true", startIndex) ) { return true; }
+                if ( (length == 5) && text.startsWith("false", startIndex) ) { return true; }
+                return (_parseLong(text, startIndex, endIndex) != null);
+            }
+            default: { return false; }
+        }
+    }
+
+    protected final HashMap<String, Route> _routes = new HashMap<>();
+    protected final Listener _listener;
+    protected final BingoMetrics _bingoMetrics;
+    protected final LatencyHistogram _pongHistogram;
+
+    /**
+     * Returns the spans of the route's declared parameters within the parameters object, as located by _scanObject, or null if the object is malformed.
+     *  An absent or null parameters object declares no parameters.
+     */
+    protected int[] _scanParameters(final String text, final int startIndex, final int endIndex, final Route route) {
+        final int[] spans = new int[route.parameters.length * 2];
+        if (route.parameters.length == 0) { return spans; }
+
+        if ( (startIndex < 0) || _isNull(text, startIndex, endIndex) ) {
+            for (int i = 0; i < spans.length; ++i) {
+                spans[i] = -1;
+            }
+            return spans;
+        }
+
+        if (! _scanObject(text, startIndex, endIndex, route.parameterNames, spans)) { return null; }
+        return spans;
+    }
+
+    /**
+     * Returns the first declared parameter that is absent, null, or not of its type, or null if every parameter is valid.
+     */
+    protected Parameter _getInvalidParameter(final String text, final int[] spans, final Route route) {
+        for (int i = 0; i < route.parameters.length; ++i) {
+            final Parameter parameter = route.parameters[i];
+            final int valueStartIndex = spans[2 * i];
+            if (valueStartIndex < 0) { return parameter; }
+            if (! _isType(text, valueStartIndex, spans[(2 * i) + 1], parameter.type)) { return parameter; }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the Json containing only the declared members of the parameters object, or null if they are malformed.
+     */
+    protected Json _parseParameters(final String text, final int[] spans, final Route route) {
+        if (route.parameters.length == 0) { return new Json(false); }
+
+        final StringBuilder stringBuilder = new StringBuilder();
+        stringBuilder.append('{');
+        for (int i = 0; i < route.parameters.length; ++i) {
+            if (i > 0) {
+                stringBuilder.append(',');
+            }
+            stringBuilder.append('"');
+            stringBuilder.append(route.parameters[i].name);
+            stringBuilder.append("\":");
+            stringBuilder.append(text, spans[2 * i], spans[(2 * i) + 1]);
+        }
+        stringBuilder.append('}');
+
+        try {
+            return Json.parse(stringBuilder.toString());
+        }
+        catch (final Exception exception) {
+            return null;
+        }
+    }
+
+    public QueryDispatcher(final Listener listener, final BingoMetrics bingoMetrics) {
+        _listener = listener;
+        _bingoMetrics = bingoMetrics;
+        _pongHistogram = bingoMetrics.getQueryHistogram("pong");
+    }
+
+    /**
+     * Routes the query to the handler; the handler is only invoked once every declared parameter is valid, and its request only contains them.
+     */
+    public void register(final String query, final Parameter[] parameters, final Handler handler) {
+        _routes.put(query, new Route(handler, parameters, _bingoMetrics.getQueryHistogram(query)));
+    }
+
+    public void dispatch(final String frame, final WebSocket webSocket) {
+        final long startNanoTime = System.nanoTime();
+        final int frameLength = frame.length();
+
+        final int[] spans = new int[FRAME_MEMBER_NAMES.length * 2];
+        if (! _scanObject(frame, 0, frameLength, FRAME_MEMBER_NAMES, spans)) {
+            if (Logger.isDebugEnabled()) {
+                Logger.debug("Malformed frame from " + webSocket.getId() + ": " + (frameLength > 256 ? frame.substring(0, 256) : frame));
+            }
+            _listener.onInvalidRequest(webSocket, null, MALFORMED_REQUEST_ERROR);
+            return;
+        }
+
+        final int queryStartIndex = spans[2 * QUERY];
+        if (queryStartIndex < 0) {
+            final int pongStartIndex = spans[2 * PONG];
+            if (pongStartIndex >= 0) {
+                _listener.onPong(webSocket, _parseLong(frame, pongStartIndex, spans[(2 * PONG) + 1]));
+                _pongHistogram.recordSince(startNanoTime);
+            }
+            return;
+        }
+
+        Integer requestId = null;
+        final int requestIdStartIndex = spans[2 * REQUEST_ID];
+        final int requestIdEndIndex = spans[(2 * REQUEST_ID) + 1];
+        if ( (requestIdStartIndex >= 0) && (! _isNull(frame, requestIdStartIndex, requestIdEndIndex)) ) {
+            final Long requestIdValue = _parseLong(frame, requestIdStartIndex, requestIdEndIndex);
+            if ( (requestIdValue == null) || (requestIdValue < Integer.MIN_VALUE) || (requestIdValue > Integer.MAX_VALUE) ) {
+                _listener.onInvalidRequest(webSocket, null, MALFORMED_REQUEST_ERROR);
+                return;
+            }
+            requestId = requestIdValue.intValue();
+        }
+
+        // Query names never contain escapes, so the raw contents of the string are the query; an escaped query is simply unknown...
+        final int queryEndIndex = spans[(2 * QUERY) + 1];
+        final boolean isString = ( (frame.charAt(queryStartIndex) == '"') && ((queryEndIndex - queryStartIndex) >= 2) );
+        final String query = (isString ? frame.substring((queryStartIndex + 1), (queryEndIndex - 1)) : null);
+        final Route route = (query != null ? _routes.get(query) : null);
+        if (route == null) {
+            if (Logger.isDebugEnabled()) {
+                Logger.debug("Unknown query from " + webSocket.getId() + ": " + frame.substring(queryStartIndex, Math.min(queryEndIndex, (queryStartIndex + 64))));
+            }
+            _listener.onInvalidRequest(webSocket, requestId, UNKNOWN_QUERY_ERROR);
+            return;
+        }
+
+        final int[] parameterSpans = _scanParameters(frame, spans[2 * PARAMETERS], spans[(2 * PARAMETERS) + 1], route);
+        if (parameterSpans == null) {
+            _listener.onInvalidRequest(webSocket, requestId, MALFORMED_REQUEST_ERROR);
+            return;
+        }
+
+        final Parameter invalidParameter = _getInvalidParameter(frame, parameterSpans, route);
+        if (invalidParameter != null) {
+            _listener.onInvalidRequest(webSocket, requestId, (INVALID_PARAMETER_ERROR + invalidParameter.name + "."));
+            return;
+        }
+
+        final Json parameters = _parseParameters(frame, parameterSpans, route);
+        if (parameters == null) {
+            _listener.onInvalidRequest(webSocket, requestId, MALFORMED_REQUEST_ERROR);
+            return;
+        }
+
+        try {
+            route.handler.handle(new QueryRequest(query, requestId, parameters), webSocket);
+        }
+        finally {
+            route.histogram.recordSince(startNanoTime);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.softwareverde.wow.bingo;
+
+import com.softwareverde.json.Json;
+
+/**
+ * A routed WebSocket request: its query, its requestId, and the parameters its handler declared.
+ *  The parameters never contain members the handler did not declare, and are empty if the request had none.
+ */
+public class QueryRequest {
+    protected final String _query;
+    protected final Integer _requestId;
+    protected final Json _parameters;
+
+    public QueryRequest(final String query, final Integer requestId, final Json parameters) {
+        _query = query;
+        _requestId = requestId;
+        _parameters = parameters;
+    }
+
+    public String getQuery() {
+        return _query;
+    }
+
+    /**
+     * Returns the id the response must echo, or null if the request did not provide one.
+     */
+    public Integer getRequestId() {
+        return _requestId;
+    }
+
+    public Json getParameters() {
+        return _parameters;
+    }
+
+    @Override
+    public String toString() {
+        return (_query + " requestId=" + _requestId + " parameters=" + _parameters);
+    }
+}
@@ -0,0 +1,228 @@
+package com.softwareverde.wow.bingo;
+
+import com.softwareverde.constable.list.List;
+import com.softwareverde.constable.list.immutable.ImmutableListBuilder;
+import com.softwareverde.logging.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * An edge node's connection to the primary for a single room.
+ *  The replica's BingoState is restored from the primary's snapshot, and then every change streamed by the primary is applied to it, in order,
+ *  via the room's WebSocketApi, which broadcasts the change to the edge's own players.  Winners are derived locally by applying the marks.
+ *  If the connection is lost, the replica keeps serving its last known state; it does not reconnect.
+ *  Join requests are written to the primary by a dedicated thread, so a slow primary never blocks the room's event loop.
+ */
+public class ReplicaClient {
+    protected static final Integer CONNECT_TIMEOUT_MS = 10000;
+
+    protected final String _host;
+    protected final Integer _port;
+    protected final String _roomId;
+    protected final String _secret;
+
+    protected Socket _socket;
+    protected DataInputStream _inputStream;
+    protected DataOutputStream _outputStream;
+
+    protected Integer _ticketCost;
+    protected Long _seed;
+    protected List<String> _squareLabels;
+
+    protected volatile WebSocketApi _webSocketApi;
+    protected final LinkedBlockingQueue<String> _joinRequests = new LinkedBlockingQueue<>(); // The player names waiting to be forwarded to the primary.
+
+    protected final Thread _readThread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+            try {
+                _readChanges();
+            }
+            catch (final IOException exception) {
+                if (! _socket.isClosed()) {
+                    Logger.warn("[" + _roomId + ": Lost connection to primary; continuing with the last replicated state]", exception);
+                }
+            }
+
+            // Joins can no longer be replicated, so requests waiting on them are failed, and the socket is closed so later requests fail immediately...
+            try { _socket.close(); } catch (final IOException exception) { }
+            _webSocketApi.failReplicatedJoins(null);
+        }
+    });
+
+    protected final Thread _writeThread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+            final Thread thread = Thread.currentThread();
+            while (! thread.isInterrupted()) {
+                final String playerName;
+                try {
+                    playerName = _joinRequests.take();
+                }
+                catch (final InterruptedException exception) { break; }
+
+                try {
+                    _outputStream.write(ReplicationProtocol.encodeJoinRequest(playerName));
+                    if (_joinRequests.isEmpty()) {
+                        _outputStream.flush();
+                    }
+                }
+                catch (final IOException exception) {
+                    Logger.warn("[" + _roomId + ": Unable to forward join to primary]", exception);
+                    _webSocketApi.failReplicatedJoins(playerName);
+                }
+            }
+        }
+    });
+
+    protected void _readChanges() throws IOException {
+        final Thread thread = Thread.currentThread();
+        while (! thread.isInterrupted()) {
+            final byte type = _inputStream.readByte();
+            switch (type) {
+                case ReplicationProtocol.JOIN: {
+                    final String playerName = _inputStream.readUTF();
+                    _webSocketApi.applyReplicatedJoin(playerName);
+                } break;
+
+                case ReplicationProtocol.MARK: {
+                    final int labelIndex = _inputStream.readInt();
+                    final boolean isMarked = _inputStream.readBoolean();
+                    _webSocketApi.applyReplicatedMark(labelIndex, isMarked);
+                } break;
+
+                case ReplicationProtocol.PAID: {
+                    final int playerId = _inputStream.readInt();
+                    final boolean hasPaid = _inputStream.readBoolean();
+                    _webSocketApi.applyReplicatedPaid(playerId, hasPaid);
+                } break;
+
+                default: {
+                    throw new IOException("Unexpected frame type: " + type);
+                }
+            }
+        }
+    }
+
+    protected void _readError(final byte type) throws IOException {
+        if (type == ReplicationProtocol.ERROR) {
+            throw new IOException("Primary rejected room " + _roomId + ": " + _inputStream.readUTF());
+        }
+        throw new IOException("Unexpected frame type: " + type);
+    }
+
+    /**
+     * The secret must match the primary's replication secret.
+     */
+    public ReplicaClient(final String host, final Integer port, final String roomId, final String secret) {
+        _host = host;
+        _port = port;
+        _roomId = roomId;
+        _secret = secret;
+    }
+
+    /**
+     * Connects to the primary and receives the room's definition, which is available via the getters once connected.
+     */
+    public void connect() throws IOException {
+        _socket = new Socket();
+        _socket.setTcpNoDelay(true);
+        _socket.setKeepAlive(true);
+        _socket.connect(new InetSocketAddress(_host, _port), CONNECT_TIMEOUT_MS);
+
+        _inputStream = new DataInputStream(new BufferedInputStream(_socket.getInputStream()));
+        _outputStream = new DataOutputStream(new BufferedOutputStream(_socket.getOutputStream()));
+
+        _outputStream.writeInt(ReplicationProtocol.MAGIC);
+        _outputStream.writeInt(ReplicationProtocol.VERSION);
+        _outputStream.writeUTF(_secret);
+        _outputStream.writeUTF(_roomId);
+        _outputStream.flush();
+
+        final byte type = _inputStream.readByte();
+        if (type != ReplicationProtocol.ROOM) {
+            _readError(type);
+        }
+
+        _ticketCost = _inputStream.readInt();
+        _seed = _inputStream.readLong();
+        final int labelCount = _inputStream.readInt();
+        final ImmutableListBuilder<String> squareLabels = new ImmutableListBuilder<>(labelCount);
+        for (int i = 0; i < labelCount; ++i) {
+            squareLabels.add(_inputStream.readUTF());
+        }
+        _squareLabels = squareLabels.build();
+    }
+
+    public String getRoomId() {
+        return _roomId;
+    }
+
+    public Integer getTicketCost() {
+        return _ticketCost;
+    }
+
+    public Long getSeed() {
+        return _seed;
+    }
+
+    public List<String> getSquareLabels() {
+        return _squareLabels;
+    }
+
+    /**
+     * Restores the BingoState from the primary's snapshot and then begins applying the primary's changes via the WebSocketApi.
+     *  The BingoState must be new, and its event loop must not yet be processing commands.
+     */
+    public void start(final BingoState bingoState, final WebSocketApi webSocketApi) throws IOException {
+        final byte type = _inputStream.readByte();
+        if (type != ReplicationProtocol.SNAPSHOT) {
+            _readError(type);
+        }
+
+        final int byteCount = _inputStream.readInt();
+        final byte[] snapshotBytes = new byte[byteCount];
+        _inputStream.readFully(snapshotBytes);
+
+        final BingoSnapshot snapshot = BingoSnapshot.fromBytes(snapshotBytes);
+        if (snapshot == null) {
+            throw new IOException("Invalid snapshot from primary.");
+        }
+
+        final long startTime = System.currentTimeMillis();
+        bingoState.restore(snapshot);
+        Logger.info("[" + _roomId + ": Replicated " + bingoState.getPlayerCount() + " players, " + bingoState.getWinnerCount() + " winners in " + (System.currentTimeMillis() - startTime) + "ms]");
+
+        _webSocketApi = webSocketApi;
+        _readThread.setName("Replica Reader - " + _roomId);
+        _readThread.setDaemon(true);
+        _readThread.start();
+
+        _writeThread.setName("Replica Writer - " + _roomId);
+        _writeThread.setDaemon(true);
+        _writeThread.start();
+    }
+
+    /**
+     * Asks the primary to create the player; the player is created on the replica once the primary streams the join back.
+     *  The request is queued and never blocks; if it cannot be written, WebSocketApi::failReplicatedJoins is invoked for the player.
+     */
+    public void requestJoin(final String playerName) {
+        _joinRequests.add(playerName);
+    }
+
+    public void stop() {
+        try { _socket.close(); } catch (final IOException exception) { }
+        _readThread.interrupt();
+        _writeThread.interrupt();
+        try { _readThread.join(5000L); } catch (final InterruptedException exception) { }
+        try { _writeThread.join(5000L); } catch (final InterruptedException exception) { }
+    }
+}
@@ -0,0 +1,121 @@
+package com.softwareverde.wow.bingo;
+
+import com.softwareverde.constable.list.List;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * The TCP protocol between a primary node and its edge nodes.  Every frame is a one-byte type followed by its fields, written via DataOutputStream.
+ *
+ *  An edge opens one connection per room and begins with the handshake: [MAGIC:int][VERSION:int][secret:UTF][roomId:UTF].
+ *  The secret is shared by the primary and its edges; the primary closes the connection without reading any further frame if it does not match.
+ *  The primary responds with ROOM and SNAPSHOT, or ERROR, and then streams every change to the room, in order, as JOIN, MARK, and PAID frames.
+ *  The edge may send JOIN_REQUEST at any time; the primary creates the player, and the player's JOIN is streamed to every edge.
+ */
+public class ReplicationProtocol {
+    public static final int MAGIC = 0x424E4752; // "BNGR"
+    public static final int VERSION = 2;
+
+    // Edge to primary...
+    public static final byte JOIN_REQUEST = 1;  // [playerName:UTF]
+
+    // Primary to edge...
+    public static final byte ROOM = 16;         // [ticketCost:int][seed:long][labelCount:int][label:UTF]...
+    public static final byte SNAPSHOT = 17;     // [byteCount:int][BingoSnapshot::toBytes]
+    public static final byte JOIN = 18;         // [playerName:UTF]
+    public static final byte MARK = 19;         // [labelIndex:int][isMarked:boolean]
+    public static final byte PAID = 20;         // [playerId:int][hasPaid:boolean]
+    public static final byte ERROR = 21;        // [errorMessage:UTF]
+
+    protected interface FrameWriter {
+        void write(DataOutputStream outputStream) throws IOException;
+    }
+
+    protected static byte[] _encode(final byte type, final FrameWriter frameWriter) {
+        final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        try (final DataOutputStream outputStream = new DataOutputStream(byteArrayOutputStream)) {
+            outputStream.writeByte(type);
+            frameWriter.write(outputStream);
+        }
+        catch (final IOException exception) {
+            throw new RuntimeException(exception); // Not possible; the stream is in-memory.
+        }
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    public static byte[] encodeRoom(final Integer ticketCost, final Long seed, final List<String> squareLabels) {
+        return _encode(ROOM, new FrameWriter() {
+            @Override
+            public void write(final DataOutputStream outputStream) throws IOException {
+                outputStream.writeInt(ticketCost);
+                outputStream.writeLong(seed);
+                outputStream.writeInt(squareLabels.getCount());
+                for (final String squareLabel : squareLabels) {
+                    outputStream.writeUTF(squareLabel);
+                }
+            }
+        });
+    }
+
+    public static byte[] encodeSnapshot(final BingoSnapshot snapshot) {
+        final byte[] snapshotBytes = snapshot.toBytes();
+        return _encode(SNAPSHOT, new FrameWriter() {
+            @Override
+            public void write(final DataOutputStream outputStream) throws IOException {
+                outputStream.writeInt(snapshotBytes.length);
+                outputStream.write(snapshotBytes);
+            }
+        });
+    }
+
+    public static byte[] encodeJoin(final String playerName) {
+        return _encode(JOIN, new FrameWriter() {
+            @Override
+            public void write(final DataOutputStream outputStream) throws IOException {
+                outputStream.writeUTF(playerName);
+            }
+        });
+    }
+
+    public static byte[] encodeMark(final Integer labelIndex, final Boolean isMarked) {
+        return _encode(MARK, new FrameWriter() {
+            @Override
+            public void write(final DataOutputStream outputStream) throws IOException {
+                outputStream.writeInt(labelIndex);
+                outputStream.writeBoolean(isMarked);
+            }
+        });
+    }
+
+    public static byte[] encodePaid(final Integer playerId, final Boolean hasPaid) {
+        return _encode(PAID, new FrameWriter() {
+            @Override
+            public void write(final DataOutputStream outputStream) throws IOException {
+                outputStream.writeInt(playerId);
+                outputStream.writeBoolean(hasPaid);
+            }
+        });
+    }
+
+    public static byte[] encodeError(final String errorMessage) {
+        return _encode(ERROR, new FrameWriter() {
+            @Override
+            public void write(final DataOutputStream outputStream) throws IOException {
+                outputStream.writeUTF(errorMessage);
+            }
+        });
+    }
+
+    public static byte[] encodeJoinRequest(final String playerName) {
+        return _encode(JOIN_REQUEST, new FrameWriter() {
+            @Override
+            public void write(final DataOutputStream outputStream) throws IOException {
+                outputStream.writeUTF(playerName);
+            }
+        });
+    }
+
+    protected ReplicationProtocol() { }
+}
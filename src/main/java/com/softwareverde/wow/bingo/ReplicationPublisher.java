@@ -0,0 +1,120 @@
+package com.softwareverde.wow.bingo;
+
+import com.softwareverde.logging.Logger;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Streams a room's changes to its subscribed edge nodes.
+ *  Each change is encoded once, on the room's event loop, and the same frame is handed to every subscriber.
+ *  A subscriber that cannot accept a frame, because it has fallen too far behind, is dropped rather than allowed to slow the room.
+ */
+public class ReplicationPublisher implements BingoState.ChangeListener {
+    public interface Subscriber {
+        /**
+         * Queues the frame to be sent to the edge; returns false if the frame could not be queued.
+         *  Invoked from the room's event loop, so it must not block.
+         */
+        Boolean send(byte[] frame);
+
+        /**
+         * Invoked when the subscriber is dropped for falling behind.
+         */
+        void onDropped();
+    }
+
+    protected final String _roomId;
+    protected final BingoStateEventLoop _bingoStateEventLoop;
+    protected final ConcurrentHashMap<Subscriber, Subscriber> _subscribers = new ConcurrentHashMap<>();
+
+    protected void _publish(final byte[] frame) {
+        for (final Subscriber subscriber : _subscribers.keySet()) {
+            if (! subscriber.send(frame)) {
+                Logger.info("[" + _roomId + ": Dropping replication subscriber that fell behind]");
+                _subscribers.remove(subscriber);
+                subscriber.onDropped();
+            }
+        }
+    }
+
+    /**
+     * Drops every subscriber; invoked when a change cannot be published, since an edge that missed a change would
+     *  diverge from the primary (e.g. a missed join shifts the player ids of every later paid change).
+     *  Dropped edges stop applying changes and keep serving their last consistent state.
+     */
+    protected void _dropSubscribers(final Exception exception) {
+        Logger.warn("[" + _roomId + ": Unable to publish change; dropping " + _subscribers.size() + " replication subscribers]", exception);
+        for (final Subscriber subscriber : _subscribers.keySet()) {
+            _subscribers.remove(subscriber);
+            subscriber.onDropped();
+        }
+    }
+
+    public ReplicationPublisher(final String roomId, final BingoStateEventLoop bingoStateEventLoop) {
+        _roomId = roomId;
+        _bingoStateEventLoop = bingoStateEventLoop;
+    }
+
+    /**
+     * Sends the room's definition and a snapshot of its state to the subscriber, and then streams every subsequent change.
+     *  The snapshot is captured on the room's event loop, so no change is missed or sent twice.
+     */
+    public void subscribe(final Subscriber subscriber) {
+        _bingoStateEventLoop.submit(new BingoStateEventLoop.Command<Void>() {
+            @Override
+            public Void run(final BingoState bingoState) {
+                final BingoSnapshot snapshot = BingoSnapshot.capture(bingoState, null);
+                final byte[] roomFrame = ReplicationProtocol.encodeRoom(bingoState.getTicketCost(), bingoState.getSeed(), bingoState.getSquareLabels());
+                final byte[] snapshotFrame = ReplicationProtocol.encodeSnapshot(snapshot);
+                if ( (! subscriber.send(roomFrame)) || (! subscriber.send(snapshotFrame)) ) {
+                    subscriber.onDropped();
+                    return null;
+                }
+
+                _subscribers.put(subscriber, subscriber);
+                Logger.info("[" + _roomId + ": Replicating to new subscriber; " + snapshot.getPlayerNames().getCount() + " players]");
+                return null;
+            }
+        }, null);
+    }
+
+    public void unsubscribe(final Subscriber subscriber) {
+        _subscribers.remove(subscriber);
+    }
+
+    public Integer getSubscriberCount() {
+        return _subscribers.size();
+    }
+
+    @Override
+    public void onPlayerJoined(final String playerName) {
+        if (_subscribers.isEmpty()) { return; }
+
+        final byte[] frame;
+        try {
+            frame = ReplicationProtocol.encodeJoin(playerName);
+        }
+        catch (final RuntimeException exception) {
+            _dropSubscribers(exception);
+            return;
+        }
+        _publish(frame);
+    }
+
+    @Override
+    public void onLabelMarked(final Integer labelIndex, final Boolean isMarked) {
+        if (_subscribers.isEmpty()) { return; }
+        _publish(ReplicationProtocol.encodeMark(labelIndex, isMarked));
+    }
+
+    @Override
+    public void onPaidChanged(final Integer playerId, final Boolean hasPaid) {
+        if (_subscribers.isEmpty()) { return; }
+        _publish(ReplicationProtocol.encodePaid(playerId, hasPaid));
+    }
+
+    @Override
+    public void onWinnerAdded(final Integer playerId, final Integer winnerIndex) {
+        // Nothing to publish; edges derive the winners by applying the same marks.
+    }
+}
@@ -0,0 +1,240 @@
+package com.softwareverde.wow.bingo;
+
+import com.softwareverde.constable.list.immutable.ImmutableListBuilder;
+import com.softwareverde.logging.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Accepts connections from edge nodes on the primary node and streams each requested room's changes to them via the room's ReplicationPublisher.
+ *  Each connection has a reader thread, which performs the handshake and forwards join requests to the room,
+ *  and a writer thread, which drains the connection's bounded queue of frames to the socket.
+ *  Edges must present the shared secret within the handshake before any room is served or any join is accepted.
+ */
+public class ReplicationServer {
+    public static final Integer MAX_QUEUED_FRAME_COUNT = 65536;
+
+    protected class EdgeConnection implements ReplicationPublisher.Subscriber {
+        protected final Socket _socket;
+        protected final LinkedBlockingQueue<byte[]> _queuedFrames = new LinkedBlockingQueue<>(MAX_QUEUED_FRAME_COUNT);
+        protected final Thread _readThread;
+        protected final Thread _writeThread;
+        protected volatile BingoRoom _bingoRoom;
+
+        /**
+         * Writes the error directly to the socket, before the connection is closed; only valid before the edge is subscribed.
+         */
+        protected void _sendError(final String errorMessage) throws IOException {
+            final OutputStream outputStream = _socket.getOutputStream();
+            outputStream.write(ReplicationProtocol.encodeError(errorMessage));
+            outputStream.flush();
+        }
+
+        protected void _read() throws IOException {
+            final DataInputStream inputStream = new DataInputStream(new BufferedInputStream(_socket.getInputStream()));
+
+            final int magic = inputStream.readInt();
+            final int version = inputStream.readInt();
+            if ( (magic != ReplicationProtocol.MAGIC) || (version != ReplicationProtocol.VERSION) ) {
+                _sendError("Unsupported protocol version.");
+                return;
+            }
+
+            final String secret = inputStream.readUTF();
+            if (! MessageDigest.isEqual(_secret, secret.getBytes(StandardCharsets.UTF_8))) {
+                Logger.info("Rejected edge connection with an invalid secret from " + _socket.getRemoteSocketAddress());
+                _sendError("Invalid secret.");
+                return;
+            }
+
+            final String roomId = inputStream.readUTF();
+            final BingoRoom bingoRoom = _rooms.get(roomId);
+            if (bingoRoom == null) {
+                _sendError("Unknown room: " + roomId);
+                return;
+            }
+
+            _bingoRoom = bingoRoom;
+            Logger.info("[" + roomId + ": Edge connected from " + _socket.getRemoteSocketAddress() + "]");
+            bingoRoom.getReplicationPublisher().subscribe(this);
+
+            while (! _readThread.isInterrupted()) {
+                final byte type = inputStream.readByte();
+                if (type != ReplicationProtocol.JOIN_REQUEST) {
+                    throw new IOException("Unexpected frame type: " + type);
+                }
+
+                final String playerName = inputStream.readUTF();
+                final ImmutableListBuilder<String> playerNames = new ImmutableListBuilder<>(1);
+                playerNames.add(playerName);
+                bingoRoom.getWebSocketApi().registerPlayers(playerNames.build(), null);
+            }
+        }
+
+        protected void _write() throws IOException, InterruptedException {
+            final DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(_socket.getOutputStream()));
+            while (! _writeThread.isInterrupted()) {
+                final byte[] frame = _queuedFrames.take();
+                outputStream.write(frame);
+
+                if (_queuedFrames.isEmpty()) {
+                    outputStream.flush();
+                }
+            }
+        }
+
+        public EdgeConnection(final Socket socket) {
+            _socket = socket;
+
+            _readThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        _read();
+                    }
+                    catch (final IOException exception) {
+                        Logger.debug("Edge connection closed: " + _socket.getRemoteSocketAddress());
+                    }
+                    finally {
+                        close();
+                    }
+                }
+            });
+            _readThread.setName("Replication Reader - " + socket.getRemoteSocketAddress());
+            _readThread.setDaemon(true);
+
+            _writeThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        _write();
+                    }
+                    catch (final IOException exception) {
+                        Logger.debug("Edge connection closed: " + _socket.getRemoteSocketAddress());
+                    }
+                    catch (final InterruptedException exception) { }
+                    finally {
+                        close();
+                    }
+                }
+            });
+            _writeThread.setName("Replication Writer - " + socket.getRemoteSocketAddress());
+            _writeThread.setDaemon(true);
+        }
+
+        public void start() {
+            _readThread.start();
+            _writeThread.start();
+        }
+
+        @Override
+        public Boolean send(final byte[] frame) {
+            return _queuedFrames.offer(frame);
+        }
+
+        @Override
+        public void onDropped() {
+            close();
+        }
+
+        public void close() {
+            if (_edgeConnections.remove(this) == null) { return; }
+
+            final BingoRoom bingoRoom = _bingoRoom;
+            if (bingoRoom != null) {
+                bingoRoom.getReplicationPublisher().unsubscribe(this);
+            }
+
+            try { _socket.close(); } catch (final IOException exception) { }
+            _readThread.interrupt();
+            _writeThread.interrupt();
+        }
+    }
+
+    protected final Map<String, BingoRoom> _rooms;
+    protected final String _bindAddress;
+    protected final Integer _port;
+    protected final byte[] _secret;
+    protected final ConcurrentHashMap<EdgeConnection, EdgeConnection> _edgeConnections = new ConcurrentHashMap<>();
+    protected ServerSocket _serverSocket;
+
+    protected final Thread _acceptThread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+            final Thread thread = Thread.currentThread();
+            while (! thread.isInterrupted()) {
+                final Socket socket;
+                try {
+                    socket = _serverSocket.accept();
+                    socket.setTcpNoDelay(true);
+                    socket.setKeepAlive(true);
+                }
+                catch (final IOException exception) {
+                    if (_serverSocket.isClosed()) { break; }
+                    Logger.debug(exception);
+                    continue;
+                }
+
+                final EdgeConnection edgeConnection = new EdgeConnection(socket);
+                _edgeConnections.put(edgeConnection, edgeConnection);
+                edgeConnection.start();
+            }
+        }
+    });
+
+    /**
+     * The rooms are looked up by id as edges connect, and must not be modified after ReplicationServer::start.
+     *  The server only listens on the bindAddress, and only serves edges that present the secret, which must not be empty.
+     */
+    public ReplicationServer(final Map<String, BingoRoom> rooms, final String bindAddress, final Integer port, final String secret) {
+        if ( (secret == null) || secret.isEmpty() ) {
+            throw new IllegalArgumentException("A replication secret is required.");
+        }
+
+        _rooms = rooms;
+        _bindAddress = bindAddress;
+        _port = port;
+        _secret = secret.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the port the server is listening on, which differs from the configured port if it was 0.
+     */
+    public Integer getPort() {
+        final ServerSocket serverSocket = _serverSocket;
+        return (serverSocket != null ? serverSocket.getLocalPort() : _port);
+    }
+
+    public void start() throws IOException {
+        _serverSocket = new ServerSocket();
+        _serverSocket.setReuseAddress(true);
+        _serverSocket.bind(new InetSocketAddress(_bindAddress, _port));
+
+        _acceptThread.setName("Replication Server");
+        _acceptThread.setDaemon(true);
+        _acceptThread.start();
+    }
+
+    public void stop() {
+        try { _serverSocket.close(); } catch (final IOException exception) { }
+        _acceptThread.interrupt();
+        try { _acceptThread.join(5000L); } catch (final InterruptedException exception) { }
+
+        for (final EdgeConnection edgeConnection : _edgeConnections.keySet()) {
+            edgeConnection.close();
+        }
+    }
+}
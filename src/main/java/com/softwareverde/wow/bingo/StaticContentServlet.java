@@ -0,0 +1,359 @@
+package com.softwareverde.wow.bingo;
+
+import com.softwareverde.http.server.servlet.Servlet;
+import com.softwareverde.http.server.servlet.request.Headers;
+import com.softwareverde.http.server.servlet.request.Request;
+import com.softwareverde.http.server.servlet.response.Response;
+import com.softwareverde.logging.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serves the files of a directory from memory.
+ *  Every file is read once, when the servlet is loaded, along with a gzip variant of each compressible file and a strong ETag for each variant,
+ *  so a burst of page loads never touches the filesystem and clients revalidating an unchanged file receive "304 Not Modified" without a body.
+ *  Files are not renamed when they change, so by default clients are told to revalidate every file ("no-cache") rather than to reuse it unchecked.
+ *  Optionally, the directory is watched and the files are reloaded whenever it changes.
+ */
+public class StaticContentServlet implements Servlet {
+    protected static final Integer NOT_MODIFIED = 304;
+    protected static final Long WATCH_DEBOUNCE_MS = 250L;
+
+    protected static final HashMap<String, String> CONTENT_TYPES = new HashMap<>();
+    static {
+        CONTENT_TYPES.put("html", "text/html; charset=utf-8");
+        CONTENT_TYPES.put("js", "application/javascript; charset=utf-8");
+        CONTENT_TYPES.put("css", "text/css; charset=utf-8");
+        CONTENT_TYPES.put("json", "application/json; charset=utf-8");
+        CONTENT_TYPES.put("txt", "text/plain; charset=utf-8");
+        CONTENT_TYPES.put("svg", "image/svg+xml");
+        CONTENT_TYPES.put("png", "image/png");
+        CONTENT_TYPES.put("jpg", "image/jpeg");
+        CONTENT_TYPES.put("jpeg", "image/jpeg");
+        CONTENT_TYPES.put("gif", "image/gif");
+        CONTENT_TYPES.put("ico", "image/x-icon");
+        CONTENT_TYPES.put("woff2", "font/woff2");
+    }
+
+    /**
+     * A file's content, and its gzip variant if compressing the file makes it smaller.
+     */
+    protected static class Asset {
+        public final String contentType;
+        public final byte[] content;
+        public final String eTag;
+        public final byte[] gzipContent;
+        public final String gzipETag;
+
+        public Asset(final String contentType, final byte[] content, final String eTag, final byte[] gzipContent, final String gzipETag) {
+            this.contentType = contentType;
+            this.content = content;
+            this.eTag = eTag;
+            this.gzipContent = gzipContent;
+            this.gzipETag = gzipETag;
+        }
+    }
+
+    protected static String _getContentType(final String fileName) {
+        final int extensionIndex = fileName.lastIndexOf('.');
+        final String extension = (extensionIndex < 0 ? "" : fileName.substring(extensionIndex + 1).toLowerCase());
+        final String contentType = CONTENT_TYPES.get(extension);
+        return (contentType != null ? contentType : "application/octet-stream");
+    }
+
+    protected static Boolean _isCompressible(final String contentType) {
+        return ( contentType.startsWith("text/") || contentType.startsWith("application/javascript") || contentType.startsWith("application/json") || contentType.startsWith("image/svg") );
+    }
+
+    protected static String _createETag(final byte[] content) {
+        try {
+            final MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            final byte[] hash = messageDigest.digest(content);
+
+            final StringBuilder stringBuilder = new StringBuilder("\"");
+            for (int i = 0; i < 16; ++i) {
+                stringBuilder.append(String.format("%02x", (hash[i] & 0xFF)));
+            }
+            stringBuilder.append("\"");
+            return stringBuilder.toString();
+        }
+        catch (final NoSuchAlgorithmException exception) {
+            throw new RuntimeException(exception); // Not possible; every JVM provides SHA-256.
+        }
+    }
+
+    protected static byte[] _gzip(final byte[] content) throws IOException {
+        final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream(content.length);
+        try (final GZIPOutputStream gzipOutputStream = new GZIPOutputStream(byteArrayOutputStream)) {
+            gzipOutputStream.write(content);
+        }
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    /**
+     * Returns the comma-separated elements of every value of the header, trimmed; empty if the header is absent.
+     */
+    protected static List<String> _getHeaderElements(final Headers headers, final String headerName) {
+        final ArrayList<String> elements = new ArrayList<>();
+        if ( (headers == null) || (! headers.containsHeader(headerName)) ) { return elements; }
+
+        final List<String> values = headers.getHeader(headerName);
+        if (values == null) { return elements; }
+
+        for (final String value : values) {
+            for (final String element : value.split(",")) {
+                final String trimmedElement = element.trim();
+                if (! trimmedElement.isEmpty()) {
+                    elements.add(trimmedElement);
+                }
+            }
+        }
+        return elements;
+    }
+
+    /**
+     * Returns the element's quality ("q") parameter, between 0 and 1; elements without one have a quality of 1, and malformed qualities are 0.
+     */
+    protected static Double _getQuality(final String element) {
+        final String[] parameters = element.split(";");
+        for (int i = 1; i < parameters.length; ++i) {
+            final String parameter = parameters[i].trim();
+            final int equalsIndex = parameter.indexOf('=');
+            if (equalsIndex < 0) { continue; }
+            if (! parameter.substring(0, equalsIndex).trim().equalsIgnoreCase("q")) { continue; }
+
+            try {
+                final double quality = Double.parseDouble(parameter.substring(equalsIndex + 1).trim());
+                return ( (quality >= 0D) && (quality <= 1D) ? quality : 0D );
+            }
+            catch (final NumberFormatException exception) {
+                return 0D;
+            }
+        }
+        return 1D;
+    }
+
+    /**
+     * Returns true if the Accept-Encoding header explicitly accepts the coding with a non-zero quality.
+     *  A wildcard is not treated as accepting the coding, since clients sending one do not necessarily support it.
+     */
+    protected static Boolean _acceptsEncoding(final Headers headers, final String coding) {
+        for (final String element : _getHeaderElements(headers, "Accept-Encoding")) {
+            final int parametersIndex = element.indexOf(';');
+            final String elementCoding = (parametersIndex < 0 ? element : element.substring(0, parametersIndex)).trim();
+            if (elementCoding.equalsIgnoreCase(coding)) {
+                return (_getQuality(element) > 0D);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if the If-None-Match header contains the ETag, or is the wildcard.
+     */
+    protected static Boolean _ifNoneMatch(final Headers headers, final String eTag) {
+        for (final String element : _getHeaderElements(headers, "If-None-Match")) {
+            if (element.equals("*")) { return true; }
+
+            final String elementETag = (element.startsWith("W/") ? element.substring(2) : element); // If-None-Match uses weak comparison.
+            if (elementETag.equals(eTag)) { return true; }
+        }
+        return false;
+    }
+
+    protected final File _directory;
+    protected final String _indexFileName;
+    protected final Long _cacheMaxAgeSeconds;
+    protected volatile Map<String, Asset> _assets = new HashMap<>(); // By request path; replaced wholesale when reloaded.
+
+    protected WatchService _watchService;
+    protected Thread _watchThread;
+
+    protected void _loadDirectory(final File directory, final String pathPrefix, final HashMap<String, Asset> assets) throws IOException {
+        final File[] files = directory.listFiles();
+        if (files == null) { return; }
+
+        for (final File file : files) {
+            final String path = (pathPrefix + "/" + file.getName());
+            if (file.isDirectory()) {
+                _loadDirectory(file, path, assets);
+                continue;
+            }
+
+            final String contentType = _getContentType(file.getName());
+            final byte[] content = Files.readAllBytes(file.toPath());
+            final String eTag = _createETag(content);
+
+            byte[] gzipContent = null;
+            String gzipETag = null;
+            if (_isCompressible(contentType)) {
+                final byte[] compressedContent = _gzip(content);
+                if (compressedContent.length < content.length) {
+                    gzipContent = compressedContent;
+                    gzipETag = (eTag.substring(0, eTag.length() - 1) + "-gzip\"");
+                }
+            }
+
+            final Asset asset = new Asset(contentType, content, eTag, gzipContent, gzipETag);
+            assets.put(path, asset);
+
+            if (file.getName().equals(_indexFileName)) {
+                assets.put((pathPrefix + "/"), asset);
+                if (! pathPrefix.isEmpty()) {
+                    assets.put(pathPrefix, asset);
+                }
+            }
+        }
+    }
+
+    protected void _registerWatchDirectories(final File directory) throws IOException {
+        directory.toPath().register(_watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+
+        final File[] files = directory.listFiles();
+        if (files == null) { return; }
+        for (final File file : files) {
+            if (file.isDirectory()) {
+                _registerWatchDirectories(file);
+            }
+        }
+    }
+
+    protected void _watch() throws InterruptedException {
+        while (true) {
+            final WatchKey watchKey = _watchService.take();
+
+            // Wait for the burst of events caused by a single save or deploy to finish before reloading...
+            Thread.sleep(WATCH_DEBOUNCE_MS);
+            watchKey.pollEvents();
+            watchKey.reset();
+            WatchKey pendingWatchKey;
+            while ((pendingWatchKey = _watchService.poll()) != null) {
+                pendingWatchKey.pollEvents();
+                pendingWatchKey.reset();
+            }
+
+            try {
+                _registerWatchDirectories(_directory); // New subdirectories must be registered; registering an existing directory is a no-op.
+                this.load();
+            }
+            catch (final IOException exception) {
+                Logger.warn("Unable to reload static content.", exception);
+            }
+        }
+    }
+
+    /**
+     * A cacheMaxAgeSeconds of zero requires clients to revalidate the files on every use.
+     */
+    public StaticContentServlet(final File directory, final String indexFileName, final Long cacheMaxAgeSeconds) {
+        _directory = directory;
+        _indexFileName = indexFileName;
+        _cacheMaxAgeSeconds = cacheMaxAgeSeconds;
+    }
+
+    /**
+     * Reads every file within the directory into memory, replacing any previously loaded files.
+     */
+    public void load() throws IOException {
+        final long startTime = System.currentTimeMillis();
+        final HashMap<String, Asset> assets = new HashMap<>();
+        _loadDirectory(_directory, "", assets);
+        _assets = assets;
+
+        long byteCount = 0L;
+        for (final Asset asset : assets.values()) {
+            byteCount += asset.content.length;
+        }
+        Logger.debug("Loaded static content: " + assets.size() + " paths, " + byteCount + " bytes in " + (System.currentTimeMillis() - startTime) + "ms.");
+    }
+
+    /**
+     * Reloads the files whenever the directory changes, until StaticContentServlet::stopWatching is called.
+     */
+    public void startWatching() throws IOException {
+        _watchService = FileSystems.getDefault().newWatchService();
+        _registerWatchDirectories(_directory);
+
+        _watchThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    _watch();
+                }
+                catch (final InterruptedException | ClosedWatchServiceException exception) { }
+            }
+        });
+        _watchThread.setName("Static Content Watcher");
+        _watchThread.setDaemon(true);
+        _watchThread.start();
+    }
+
+    public void stopWatching() {
+        if (_watchThread == null) { return; }
+
+        _watchThread.interrupt();
+        try { _watchService.close(); } catch (final IOException exception) { }
+        try { _watchThread.join(5000L); } catch (final InterruptedException exception) { }
+        _watchThread = null;
+    }
+
+    @Override
+    public Response onRequest(final Request request) {
+        final Response response = new Response();
+
+        String path = request.getFilePath();
+        final int queryIndex = path.indexOf('?');
+        if (queryIndex >= 0) {
+            path = path.substring(0, queryIndex);
+        }
+
+        final Asset asset = _assets.get(path);
+        if (asset == null) {
+            response.setCode(Response.Codes.NOT_FOUND);
+            response.setContent("Not found.");
+            return response;
+        }
+
+        final Headers headers = request.getHeaders();
+        final boolean useGzip = ( (asset.gzipContent != null) && _acceptsEncoding(headers, "gzip") );
+        final String eTag = (useGzip ? asset.gzipETag : asset.eTag);
+
+        response.setHeader("ETag", eTag);
+        response.setHeader("Cache-Control", (_cacheMaxAgeSeconds > 0L ? ("public, max-age=" + _cacheMaxAgeSeconds) : "no-cache"));
+        if (asset.gzipContent != null) {
+            response.setHeader("Vary", "Accept-Encoding");
+        }
+
+        if (_ifNoneMatch(headers, eTag)) {
+            response.setCode(NOT_MODIFIED);
+            response.setContent(new byte[0]);
+            return response;
+        }
+
+        response.setCode(Response.Codes.OK);
+        response.setHeader("Content-Type", asset.contentType);
+        if (useGzip) {
+            response.setHeader("Content-Encoding", "gzip");
+            response.setContent(asset.gzipContent);
+        }
+        else {
+            response.setContent(asset.content);
+        }
+        return response;
+    }
+}
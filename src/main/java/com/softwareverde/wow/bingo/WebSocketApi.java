@@ -2,6 +2,9 @@ package com.softwareverde.wow.bingo;
 
 import com.softwareverde.concurrent.threadpool.CachedThreadPool;
 import com.softwareverde.constable.list.List;
+import com.softwareverde.constable.list.immutable.ImmutableListBuilder;
+import com.softwareverde.constable.list.mutable.MutableList;
+import com.softwareverde.http.querystring.GetParameters;
 import com.softwareverde.http.server.servlet.WebSocketServlet;
 import com.softwareverde.http.server.servlet.request.WebSocketRequest;
 import com.softwareverde.http.server.servlet.response.WebSocketResponse;
@@ -10,90 +13,159 @@ import com.softwareverde.json.Json;
 import com.softwareverde.logging.Logger;
 import com.softwareverde.util.Util;
 
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 public class WebSocketApi implements WebSocketServlet {
-    protected static final ReentrantReadWriteLock.ReadLock READ_LOCK;
-    protected static final ReentrantReadWriteLock.WriteLock WRITE_LOCK;
-    static {
-        final ReentrantReadWriteLock readWriteLock = new ReentrantReadWriteLock();
-        READ_LOCK = readWriteLock.readLock();
-        WRITE_LOCK = readWriteLock.writeLock();
+    protected static final Integer MAX_MARK_BATCH_SIZE = 1024;
+
+    protected static final AtomicLong _nextSocketId = new AtomicLong(1L); // WebSocket ids are unique across every room.
+
+    // NOTE: The WebSocket maps are concurrent so that they may be read and written without locking; the BingoState is owned by the BingoStateEventLoop.
+    //  Each room has its own WebSocketApi, so the maps only contain the room's WebSockets.
+    protected final ConcurrentHashMap<Long, WebSocket> _webSockets = new ConcurrentHashMap<>();
+    protected final ConcurrentHashMap<Long, WebSocket> _adminWebSockets = new ConcurrentHashMap<>();
+    protected final ConcurrentHashMap<Long, OutboundQueue> _outboundQueues = new ConcurrentHashMap<>(); // The queued outbound messages of each WebSocket, by WebSocket id.
+    protected final ConcurrentHashMap<Long, Integer> _playerIds = new ConcurrentHashMap<>(); // The BingoState player id of each WebSocket, by WebSocket id.
+    protected final ConcurrentHashMap<Long, Boolean> _binaryWebSocketIds = new ConcurrentHashMap<>(); // The WebSockets that negotiated WebSocketBinaryProtocol.
+
+    /**
+     * A getGameState request from a player that does not yet exist on a replica, waiting for the primary to replicate the player's join.
+     */
+    protected static class PendingGameStateRequest {
+        public final WebSocket webSocket;
+        public final Integer requestId;
+
+        public PendingGameStateRequest(final WebSocket webSocket, final Integer requestId) {
+            this.webSocket = webSocket;
+            this.requestId = requestId;
+        }
     }
 
-    protected static final HashMap<Long, WebSocket> WEB_SOCKETS = new HashMap<>();
-    protected static final WeakHashMap<Long, WebSocket> ADMIN_WEB_SOCKETS = new WeakHashMap<>();
-    protected static final HashMap<Long, String> USERNAMES = new HashMap<>();
+    protected final HashMap<String, MutableList<PendingGameStateRequest>> _pendingGameStateRequests = new HashMap<>(); // By username; only accessed from the BingoStateEventLoop.
 
-    protected static final AtomicLong _nextSocketId = new AtomicLong(1L);
+    // NOTE: Jackpot, player list, and winner broadcasts are deferred and flushed together by the BroadcastScheduler,
+    //  so a burst of changes is sent as one message per WebSocket; only accessed from the BingoStateEventLoop.
+    protected boolean _isJackpotDirty = false;
+    protected boolean _isPlayerListDirty = false;
+    protected boolean _areBingoWinnersDirty = false;
+    protected boolean _isFlushScheduled = false;
 
     protected volatile Boolean _isShuttingDown = false;
+    protected ReplicaClient _primary; // Set if this WebSocketApi serves a read replica of a room owned by a primary node.
 
-    protected final BingoState _bingoState;
+    protected final BingoStateEventLoop _eventLoop;
     protected final String _adminPassword;
-
-    public WebSocketApi(final BingoState bingoState, final String adminPassword) {
-        _bingoState = bingoState;
+    protected final CachedThreadPool _threadPool;
+    protected final BroadcastScheduler _broadcastScheduler;
+    protected final BingoMetrics _bingoMetrics;
+    protected final GameStateCache _gameStateCache;
+    protected final BoardGenerator _boardGenerator = new BoardGenerator(); // Shared by every registration; single joins are generated inline.
+    protected final HeartbeatManager _heartbeatManager;
+    protected final QueryDispatcher _queryDispatcher;
+
+    /**
+     * The threadPool sends each WebSocket's queued messages, and the broadcastScheduler delays the room's coalesced broadcasts;
+     *  both may be shared between rooms, and their lifecycles are managed by the caller.
+     */
+    public WebSocketApi(final BingoStateEventLoop eventLoop, final String adminPassword, final CachedThreadPool threadPool, final BroadcastScheduler broadcastScheduler, final BingoMetrics bingoMetrics) {
+        _eventLoop = eventLoop;
         _adminPassword = adminPassword;
-    }
-
-    protected final CachedThreadPool _threadPool = new CachedThreadPool(256, 1000L);
+        _threadPool = threadPool;
+        _broadcastScheduler = broadcastScheduler;
+        _bingoMetrics = bingoMetrics;
+        _gameStateCache = new GameStateCache(bingoMetrics);
+        _heartbeatManager = new HeartbeatManager(new HeartbeatManager.Listener() {
+            @Override
+            public void sendPing(final Long webSocketId, final Long nonce) {
+                final OutboundQueue outboundQueue = _outboundQueues.get(webSocketId);
+                if (outboundQueue == null) { return; }
+                outboundQueue.enqueue(("{\"ping\":" + nonce + "}"), "ping");
+            }
 
-    protected final Thread _pingThread = new Thread(new Runnable() {
-        @Override
-        public void run() {
-            final Thread thread = Thread.currentThread();
-            thread.setName("WebSocket Ping Thread");
-            thread.setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
-                @Override
-                public void uncaughtException(final Thread thread, final Throwable exception) {
-                    Logger.error(exception);
+            @Override
+            public void onDeadConnection(final Long webSocketId) {
+                final WebSocket webSocket = _webSockets.get(webSocketId);
+                _removeWebSocket(webSocketId);
+                if (webSocket != null) {
+                    webSocket.close();
                 }
-            });
+            }
+        }, bingoMetrics);
 
-            while (! thread.isInterrupted()) {
-                try { Thread.sleep(10000L); }
-                catch (final InterruptedException exception) { break; }
+        _queryDispatcher = new QueryDispatcher(new QueryDispatcher.Listener() {
+            @Override
+            public void onPong(final WebSocket webSocket, final Long nonce) {
+                _heartbeatManager.onPong(webSocket.getId(), nonce);
+            }
 
-                final String message;
-                {
-                    final Long nonce = (long) (Math.random() * Integer.MAX_VALUE);
-                    final Json pingMessage = new Json(false);
-                    pingMessage.put("ping", nonce);
-                    message = pingMessage.toString();
-                }
+            @Override
+            public void onInvalidRequest(final WebSocket webSocket, final Integer requestId, final String errorMessage) {
+                // NOTE: The error messages are QueryDispatcher constants, so they never require escaping.
+                _webSocketSendMessage(webSocket, ("{\"requestId\":" + requestId + ",\"wasSuccess\":0,\"errorMessage\":\"" + errorMessage + "\"}"));
+            }
+        }, bingoMetrics);
+        _registerQueryHandlers();
+    }
 
-                READ_LOCK.lock();
-                try {
-                    for (final WebSocket webSocket : WEB_SOCKETS.values()) {
-                        webSocket.sendMessage(message);
-                    }
-                }
-                finally {
-                    READ_LOCK.unlock();
-                }
+    /**
+     * Serializes the message once and sends the same payload to every WebSocket that has loaded a BingoGame,
+     *  sending binaryMessage instead to the WebSockets that negotiated WebSocketBinaryProtocol.
+     *  The binary message is only encoded if at least one such WebSocket is connected.
+     *  The time spent encoding and queueing are recorded separately within the BingoMetrics' BroadcastStatistics.
+     */
+    protected void _broadcastToPlayers(final Json message, final WebSocketBinaryProtocol.Encoder binaryMessage) {
+        final long encodeStartTime = System.nanoTime();
+        final String payload = message.toString();
+        final byte[] binaryPayload = ( ((binaryMessage != null) && (! _binaryWebSocketIds.isEmpty())) ? binaryMessage.encode() : null );
+        final long encodeEndTime = System.nanoTime();
+
+        int recipientCount = 0;
+        for (final WebSocket webSocket : _webSockets.values()) {
+            final Long webSocketId = webSocket.getId();
+            if (! _playerIds.containsKey(webSocketId)) { continue; }
+
+            final OutboundQueue outboundQueue = _outboundQueues.get(webSocketId);
+            if (outboundQueue == null) { continue; }
+
+            if ( (binaryPayload != null) && _binaryWebSocketIds.containsKey(webSocketId) ) {
+                outboundQueue.enqueue(binaryPayload, null);
+            }
+            else {
+                outboundQueue.enqueue(payload, null);
             }
+            recipientCount += 1;
+        }
+        final long fanOutEndTime = System.nanoTime();
+
+        final long encodeNanoseconds = (encodeEndTime - encodeStartTime);
+        final long fanOutNanoseconds = (fanOutEndTime - encodeEndTime);
+        final BroadcastStatistics broadcastStatistics = _bingoMetrics.getBroadcastStatistics();
+        broadcastStatistics.recordBroadcast(recipientCount, encodeNanoseconds, fanOutNanoseconds);
+        if (Logger.isDebugEnabled()) {
+            Logger.debug("Broadcast to " + recipientCount + " players: " + payload.length() + " bytes, encode=" + (encodeNanoseconds / 1000L) + "us, fanOut=" + (fanOutNanoseconds / 1000L) + "us");
         }
-    });
+    }
 
-    protected Json _createGlobalGameStateJson() {
+    protected Json _createGlobalGameStateJson(final BingoState bingoState) {
         final Json markedIndexes = new Json(false);
         int index = 0;
-        for (final String label : _bingoState.getSquareLabels()) {
-            final Boolean isMarked = _bingoState.isLabelMarked(index);
+        for (final String label : bingoState.getSquareLabels()) {
+            final Boolean isMarked = bingoState.isLabelMarked(index);
             markedIndexes.put(String.valueOf(index), isMarked);
             index += 1;
         }
         return markedIndexes;
     }
 
-    protected Json _createPlayersJson() {
+    protected Json _createPlayersJson(final BingoState bingoState) {
         final Json playersJson = new Json(true);
-        for (final String playerName : _bingoState.getPlayers()) {
-            final Boolean hasPaid = _bingoState.hasPaid(playerName);
+        final int playerCount = bingoState.getPlayerCount();
+        for (int playerId = 0; playerId < playerCount; ++playerId) {
+            final String playerName = bingoState.getPlayerName(playerId);
+            final Boolean hasPaid = bingoState.hasPaid(playerId);
 
             final Json playerJson = new Json(false);
             playerJson.put("name", playerName);
@@ -104,84 +176,129 @@ public class WebSocketApi implements WebSocketServlet {
         return playersJson;
     }
 
-    protected void _handleGetLabels(final Json request, final WebSocket webSocket) {
-        Logger.trace("_handleGetLabels " + webSocket.getId() + " " + request);
-        final Integer requestId = request.getInteger("requestId");
+    protected Json _createWinnersJson(final BingoState bingoState) {
+        final List<Integer> winningPlayerIds = bingoState.getWinningPlayerIds();
+        final BingoAggregates.Totals totals = bingoState.getTotals();
+        final Json winnersJson = new Json(true);
 
-        final Json squaresJson = new Json(true);
-        for (final String squareLabel : _bingoState.getSquareLabels()) {
-            squaresJson.add(squareLabel);
-        }
+        int i = 0;
+        for (final Integer playerId : winningPlayerIds) {
+            final String username = bingoState.getPlayerName(playerId);
+            final Long amount = totals.getPayout(i);
 
-        final Json responseJson = new Json();
-        responseJson.put("requestId", requestId);
-        responseJson.put("wasSuccess", 1);
-        responseJson.put("labels", squaresJson);
+            final Json playerJson = new Json(false);
+            playerJson.put("name", username);
+            playerJson.put("amount", amount);
 
-        _webSocketSendMessage(webSocket, responseJson.toString());
+            winnersJson.add(playerJson);
+
+            i += 1;
+        }
+
+        return winnersJson;
     }
 
-    protected void _handleGetPlayers(final Json request, final WebSocket webSocket) {
-        Logger.trace("_handleGetPlayers " + webSocket.getId() + " " + request);
-        final Integer requestId = request.getInteger("requestId");
+    /**
+     * Returns the trimmed, lowercase username, or null if the username is missing, blank, or too long; see BingoState::isValidPlayerName.
+     *  Every path that accepts a username must normalize it here, so replicas and the primary always agree on the name.
+     */
+    protected static String _normalizeUsername(final String username) {
+        if (username == null) { return null; }
 
-        final Json playersJson;
-        READ_LOCK.lock();
-        try {
-            playersJson = _createPlayersJson();
-        }
-        finally {
-            READ_LOCK.unlock();
-        }
+        final String normalizedUsername = username.trim().toLowerCase();
+        if (! BingoState.isValidPlayerName(normalizedUsername)) { return null; }
+        return normalizedUsername;
+    }
 
-        final Json responseJson = new Json();
-        responseJson.put("requestId", requestId);
-        responseJson.put("wasSuccess", 1);
-        responseJson.put("players", playersJson);
+    /**
+     * Submits the command to the BingoStateEventLoop and sends the Json it returns, if any, to the WebSocket.
+     */
+    protected void _submitRequest(final QueryRequest request, final WebSocket webSocket, final BingoStateEventLoop.Command<Json> command) {
+        _eventLoop.submit(command, new BingoStateEventLoop.Callback<Json>() {
+            @Override
+            public void onComplete(final Json responseJson) {
+                if (responseJson == null) { return; }
+                _webSocketSendMessage(webSocket, responseJson.toString());
+            }
 
-        _webSocketSendMessage(webSocket, responseJson.toString());
+            @Override
+            public void onError(final Exception exception) {
+                _sendRequestFailedError(request, webSocket);
+            }
+        });
     }
 
-    protected void _handleGetWinners(final Json request, final WebSocket webSocket) {
-        Logger.trace("_handleGetWinners " + webSocket.getId() + " " + request);
-        final Integer requestId = request.getInteger("requestId");
+    protected void _handleGetLabels(final QueryRequest request, final WebSocket webSocket) {
+        if (Logger.isTraceEnabled()) { Logger.trace("_handleGetLabels " + webSocket.getId() + " " + request); }
+        final Integer requestId = request.getRequestId();
 
-        final Json winnersJson;
-        READ_LOCK.lock();
-        try {
-            final List<String> winners = _bingoState.getWinningBingoUsers();
+        _submitRequest(request, webSocket, new BingoStateEventLoop.Command<Json>() {
+            @Override
+            public Json run(final BingoState bingoState) {
+                final Json squaresJson = new Json(true);
+                for (final String squareLabel : bingoState.getSquareLabels()) {
+                    squaresJson.add(squareLabel);
+                }
 
-            winnersJson = new Json(true);
-            for (final String winner : winners) {
-                winnersJson.add(winner);
+                final Json responseJson = new Json();
+                responseJson.put("requestId", requestId);
+                responseJson.put("wasSuccess", 1);
+                responseJson.put("labels", squaresJson);
+                return responseJson;
             }
-        }
-        finally {
-            READ_LOCK.unlock();
-        }
+        });
+    }
 
-        final Json responseJson = new Json();
-        responseJson.put("requestId", requestId);
-        responseJson.put("wasSuccess", 1);
-        responseJson.put("winners", winnersJson);
+    protected void _handleGetPlayers(final QueryRequest request, final WebSocket webSocket) {
+        if (Logger.isTraceEnabled()) { Logger.trace("_handleGetPlayers " + webSocket.getId() + " " + request); }
+        final Integer requestId = request.getRequestId();
 
-        _webSocketSendMessage(webSocket, responseJson.toString());
+        _submitRequest(request, webSocket, new BingoStateEventLoop.Command<Json>() {
+            @Override
+            public Json run(final BingoState bingoState) {
+                final Json responseJson = new Json();
+                responseJson.put("requestId", requestId);
+                responseJson.put("wasSuccess", 1);
+                responseJson.put("players", _createPlayersJson(bingoState));
+                return responseJson;
+            }
+        });
     }
 
-    protected void _handleGetJackpot(final Json request, final WebSocket webSocket) {
-        Logger.trace("_handleGetJackpot " + webSocket.getId() + " " + request);
+    protected void _handleGetWinners(final QueryRequest request, final WebSocket webSocket) {
+        if (Logger.isTraceEnabled()) { Logger.trace("_handleGetWinners " + webSocket.getId() + " " + request); }
+        final Integer requestId = request.getRequestId();
 
-        final Integer requestId = request.getInteger("requestId");
+        _submitRequest(request, webSocket, new BingoStateEventLoop.Command<Json>() {
+            @Override
+            public Json run(final BingoState bingoState) {
+                final List<Integer> winningPlayerIds = bingoState.getWinningPlayerIds();
 
-        final Long jackpot;
+                final Json winnersJson = new Json(true);
+                for (final Integer playerId : winningPlayerIds) {
+                    final String winner = bingoState.getPlayerName(playerId);
+                    winnersJson.add(winner);
+                }
 
-        READ_LOCK.lock();
-        try {
-            jackpot = _bingoState.getJackpot();
-        }
-        finally {
-            READ_LOCK.unlock();
-        }
+                final Json responseJson = new Json();
+                responseJson.put("requestId", requestId);
+                responseJson.put("wasSuccess", 1);
+                responseJson.put("winners", winnersJson);
+                return responseJson;
+            }
+        });
+    }
+
+    protected void _handleGetJackpot(final QueryRequest request, final WebSocket webSocket) {
+        if (Logger.isTraceEnabled()) { Logger.trace("_handleGetJackpot " + webSocket.getId() + " " + request); }
+        final Integer requestId = request.getRequestId();
+
+        final Long jackpot = _eventLoop.readConcurrently(new BingoStateEventLoop.Command<Long>() {
+            @Override
+            public Long run(final BingoState bingoState) {
+                return bingoState.getJackpot();
+            }
+        });
 
         final Json responseJson = new Json();
         responseJson.put("requestId", requestId);
@@ -191,154 +308,300 @@ public class WebSocketApi implements WebSocketServlet {
         _webSocketSendMessage(webSocket, responseJson.toString());
     }
 
-    protected void _broadcastPlayerList() {
-        READ_LOCK.lock();
-        try {
-            final String message;
-            {
-                final Json playersJson = _createPlayersJson();
-                final Json responseJson = new Json();
-                responseJson.put("wasSuccess", 1);
-                responseJson.put("players", playersJson);
-
-                message = responseJson.toString();
-            }
+    protected void _handleGetGameState(final QueryRequest request, final WebSocket webSocket) {
+        if (Logger.isTraceEnabled()) { Logger.trace("_handleGetGameState " + webSocket.getId() + " " + request); }
+        final Long webSocketId = webSocket.getId();
 
-            for (final WebSocket webSocket : ADMIN_WEB_SOCKETS.values()) {
-                if (webSocket == null) { continue; }
-                _webSocketSendMessage(webSocket, message);
-            }
+        final Integer requestId = request.getRequestId();
+        final Json parameters = request.getParameters();
+        final String username = _normalizeUsername(parameters.getString("username"));
+        if (username == null) {
+            _sendInvalidUsernameError(request, webSocket);
+            return;
         }
-        finally {
-            READ_LOCK.unlock();
+
+        { // Existing players are served directly from the published BingoGames, without waiting on the BingoStateEventLoop...
+            final Boolean wasSent = _eventLoop.readConcurrently(new BingoStateEventLoop.Command<Boolean>() {
+                @Override
+                public Boolean run(final BingoState bingoState) {
+                    // NOTE: The version must be read before the board; the board may then be newer than the version, but
+                    //  never older, and re-applying a mark the board already has is harmless to the client.
+                    final Long version = bingoState.getVersion();
+                    final BingoGame bingoGame = bingoState.findPublishedBingoGame(username);
+                    if (bingoGame == null) { return false; }
+
+                    _setPlayerId(webSocketId, bingoGame.getPlayerId());
+                    _sendGameState(webSocket, requestId, bingoGame, bingoState.getJackpot(), version);
+                    return true;
+                }
+            });
+
+            if (wasSent) { return; }
         }
-    }
 
-    protected void _handleGetGameState(final Json request, final WebSocket webSocket) {
-        Logger.trace("_handleGetGameState " + webSocket.getId() + " " + request);
-        final Long webSocketId = webSocket.getId();
+        // Only the creation of a new BingoGame is serialized through the BingoStateEventLoop...
+        _submitRequest(request, webSocket, new BingoStateEventLoop.Command<Json>() {
+            @Override
+            public Json run(final BingoState bingoState) {
+                Integer playerId = bingoState.getPlayerId(username);
+                final boolean userWasCreated = (playerId == null);
+                if (userWasCreated) {
+                    if (_primary != null) {
+                        // Replicas do not create players; the response is sent once the primary replicates the join.
+                        _addPendingGameStateRequest(username, webSocket, requestId);
+                        return null;
+                    }
 
-        final Integer requestId = request.getInteger("requestId");
-        final Json parameters = request.get("parameters");
-        final String username = parameters.getString("username").toLowerCase();
+                    Logger.info("Creating BingoGame for: " + username);
+                    playerId = bingoState.newBingoGame(username);
+                }
 
-        final Long jackpot;
-        final BingoGame bingoGame;
-        final boolean userWasCreated;
+                _sendGameStateResponse(requestId, webSocket, bingoState, playerId);
 
-        WRITE_LOCK.lock();
-        try {
-            if (! _bingoState.hasBingoGame(username)) {
-                Logger.info("Creating BingoGame for: " + username);
-                _bingoState.newBingoGame(username);
-                userWasCreated = true;
-            }
-            else {
-                userWasCreated = false;
+                if (userWasCreated) {
+                    _schedulePlayerListBroadcast();
+                }
+
+                return null;
             }
+        });
+    }
 
-            bingoGame = _bingoState.getBingoGame(username);
-            USERNAMES.put(webSocketId, username);
+    /**
+     * Must be invoked from the BingoStateEventLoop.
+     */
+    protected void _sendGameStateResponse(final Integer requestId, final WebSocket webSocket, final BingoState bingoState, final Integer playerId) {
+        _setPlayerId(webSocket.getId(), playerId);
 
-            jackpot = _bingoState.getJackpot();
-        }
-        finally {
-            WRITE_LOCK.unlock();
+        final BingoGame bingoGame = bingoState.getBingoGame(playerId);
+        _sendGameState(webSocket, requestId, bingoGame, bingoState.getJackpot(), bingoState.getVersion());
+    }
+
+    /**
+     * Sends the player's board to the WebSocket, as Json or as a WebSocketBinaryProtocol.GAME_STATE frame; the requestId is null for pushes.
+     */
+    protected void _sendGameState(final WebSocket webSocket, final Integer requestId, final BingoGame bingoGame, final Long jackpot, final Long version) {
+        final Long webSocketId = webSocket.getId();
+        if (_binaryWebSocketIds.containsKey(webSocketId)) {
+            final OutboundQueue outboundQueue = _outboundQueues.get(webSocketId);
+            if (outboundQueue == null) { return; } // The WebSocket has been closed.
+            outboundQueue.enqueue(WebSocketBinaryProtocol.encodeGameState(requestId, bingoGame, jackpot, version), null);
+            return;
         }
 
-        final Json responseJson = new Json();
-        responseJson.put("requestId", requestId);
-        responseJson.put("wasSuccess", 1);
-        responseJson.put("gameState", bingoGame);
-        responseJson.put("jackpot", jackpot);
+        _webSocketSendMessage(webSocket, _gameStateCache.getGameStateMessage(requestId, bingoGame, jackpot, version));
+    }
 
-        if (userWasCreated) {
-            _broadcastPlayerList();
+    /**
+     * Must be invoked from the BingoStateEventLoop.
+     */
+    protected void _addPendingGameStateRequest(final String username, final WebSocket webSocket, final Integer requestId) {
+        MutableList<PendingGameStateRequest> pendingRequests = _pendingGameStateRequests.get(username);
+        if (pendingRequests == null) {
+            pendingRequests = new MutableList<>();
+            _pendingGameStateRequests.put(username, pendingRequests);
+            _primary.requestJoin(username);
         }
-
-        _webSocketSendMessage(webSocket, responseJson.toString());
+        pendingRequests.add(new PendingGameStateRequest(webSocket, requestId));
     }
 
-    protected void _broadcastGameState() {
-        Logger.trace("_broadcastGameState");
-        READ_LOCK.lock();
-        try {
-            for (final WebSocket webSocket : WEB_SOCKETS.values()) {
-                final Long webSocketId = webSocket.getId();
-                final String username = USERNAMES.get(webSocketId);
-                if (username == null) { continue; }
+    /**
+     * Must be invoked from the BingoStateEventLoop.
+     */
+    protected void _completePendingGameStateRequests(final BingoState bingoState, final String username) {
+        final MutableList<PendingGameStateRequest> pendingRequests = _pendingGameStateRequests.remove(username);
+        if (pendingRequests == null) { return; }
 
-                final Long jackpot = _bingoState.getJackpot();
-                final BingoGame bingoGame = _bingoState.getBingoGame(username);
+        final Integer playerId = bingoState.getPlayerId(username);
+        for (final PendingGameStateRequest pendingRequest : pendingRequests) {
+            _sendGameStateResponse(pendingRequest.requestId, pendingRequest.webSocket, bingoState, playerId);
+        }
+    }
 
-                final Json responseJson = new Json();
-                responseJson.put("requestId", null);
-                responseJson.put("wasSuccess", 1);
-                responseJson.put("gameState", bingoGame);
-                responseJson.put("jackpot", jackpot);
+    /**
+     * Schedules a flush of the room's pending broadcasts, unless one is already scheduled.
+     *  Must be invoked from the BingoStateEventLoop.
+     */
+    protected void _scheduleFlush() {
+        if (_isFlushScheduled) { return; }
+        _isFlushScheduled = true;
 
-                _webSocketSendMessage(webSocket, responseJson.toString());
+        _broadcastScheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                _eventLoop.submit(new BingoStateEventLoop.Command<Void>() {
+                    @Override
+                    public Void run(final BingoState bingoState) {
+                        _flushBroadcasts(bingoState);
+                        return null;
+                    }
+                }, null);
             }
-        }
-        finally {
-            READ_LOCK.unlock();
-        }
+        });
     }
 
-    protected Json _createWinnersJson() {
-        final List<String> bingoWinners = _bingoState.getWinningBingoUsers();
-        final Json winnersJson = new Json(true);
+    /**
+     * Marks the jackpot as changed; every WebSocket receives the jackpot, without any board, with the next flush.
+     *  Boards only change when a label is marked, which is broadcast on its own, so a paid change never resends them.
+     *  Must be invoked from the BingoStateEventLoop.
+     */
+    protected void _scheduleJackpotBroadcast() {
+        _isJackpotDirty = true;
+        _scheduleFlush();
+    }
 
-        int i = 0;
-        for (final String username : bingoWinners) {
-            final Long amount = _bingoState.getJackpot(i);
+    /**
+     * Marks the player list as changed; the admins receive the list with the next flush.
+     *  Must be invoked from the BingoStateEventLoop.
+     */
+    protected void _schedulePlayerListBroadcast() {
+        _isPlayerListDirty = true;
+        _scheduleFlush();
+    }
 
-            final Json playerJson = new Json(false);
-            playerJson.put("name", username);
-            playerJson.put("amount", amount);
+    /**
+     * Marks the winners as changed; every WebSocket receives the winners with the next flush.
+     *  Must be invoked from the BingoStateEventLoop.
+     */
+    protected void _scheduleBingoWinnersBroadcast() {
+        _areBingoWinnersDirty = true;
+        _scheduleFlush();
+    }
 
-            winnersJson.add(playerJson);
+    /**
+     * Returns the members of the serialized Json object, without its enclosing braces, so they may be appended to another message.
+     */
+    protected static String _toFields(final Json jsonObject) {
+        final String json = jsonObject.toString();
+        return json.substring(1, (json.length() - 1));
+    }
 
-            i += 1;
+    /**
+     * Sends every change marked since the previous flush, as at most one Json message per WebSocket:
+     *  every WebSocket receives the jackpot and the winners, and admins also receive the player list.
+     *  The state is read at flush time and each message is serialized once, so any number of changes within the interval cost
+     *  a single shared message; only admins receive a second variant.
+     *  Must be invoked from the BingoStateEventLoop.
+     */
+    protected void _flushBroadcasts(final BingoState bingoState) {
+        final boolean isJackpotDirty = _isJackpotDirty;
+        final boolean isPlayerListDirty = ( _isPlayerListDirty && (! _adminWebSockets.isEmpty()) );
+        final boolean areBingoWinnersDirty = _areBingoWinnersDirty;
+        _isJackpotDirty = false;
+        _isPlayerListDirty = false;
+        _areBingoWinnersDirty = false;
+        _isFlushScheduled = false;
+
+        if ( (! isJackpotDirty) && (! isPlayerListDirty) && (! areBingoWinnersDirty) ) { return; }
+
+        final long encodeStartTime = System.nanoTime();
+        final Json sharedJson = new Json(false);
+        if (isJackpotDirty) {
+            sharedJson.put("jackpot", bingoState.getJackpot());
+        }
+        if (areBingoWinnersDirty) {
+            sharedJson.put("bingoWinners", _createWinnersJson(bingoState));
+        }
+        final String sharedFields = _toFields(sharedJson);
+
+        final String sharedMessage = (sharedFields.isEmpty() ? null : ("{\"requestId\":null,\"wasSuccess\":1," + sharedFields + "}"));
+        final String adminMessage;
+        if (isPlayerListDirty) {
+            final Json playersJson = new Json(false);
+            playersJson.put("players", _createPlayersJson(bingoState));
+            adminMessage = ("{\"requestId\":null,\"wasSuccess\":1," + (sharedFields.isEmpty() ? "" : (sharedFields + ",")) + _toFields(playersJson) + "}");
         }
+        else {
+            adminMessage = sharedMessage;
+        }
+        final long encodeEndTime = System.nanoTime();
 
-        return winnersJson;
-    }
+        int recipientCount = 0;
+        for (final WebSocket webSocket : _webSockets.values()) {
+            final Long webSocketId = webSocket.getId();
+            final OutboundQueue outboundQueue = _outboundQueues.get(webSocketId);
+            if (outboundQueue == null) { continue; }
 
-    protected void _broadcastBingoWinners() {
-        Logger.trace("_broadcastBingoWinners");
+            final String message = (_adminWebSockets.containsKey(webSocketId) ? adminMessage : sharedMessage);
+            if (message == null) { continue; }
 
-        READ_LOCK.lock();
-        try {
-            final Json winnersJson = _createWinnersJson();
+            outboundQueue.enqueue(message, null);
+            recipientCount += 1;
+        }
+        final long fanOutEndTime = System.nanoTime();
+
+        final long encodeNanoseconds = (encodeEndTime - encodeStartTime);
+        final long fanOutNanoseconds = (fanOutEndTime - encodeEndTime);
+        final BroadcastStatistics broadcastStatistics = _bingoMetrics.getBroadcastStatistics();
+        broadcastStatistics.recordBroadcast(recipientCount, encodeNanoseconds, fanOutNanoseconds);
+        if (Logger.isDebugEnabled()) {
+            Logger.debug("Flushed broadcasts to " + recipientCount + " sockets: jackpot=" + isJackpotDirty + ", players=" + isPlayerListDirty + ", bingoWinners=" + areBingoWinnersDirty + ", encode=" + (encodeNanoseconds / 1000L) + "us, fanOut=" + (fanOutNanoseconds / 1000L) + "us");
+        }
+    }
 
-            for (final WebSocket webSocket : WEB_SOCKETS.values()) {
-                final Json responseJson = new Json();
-                responseJson.put("wasSuccess", 1);
-                responseJson.put("bingoWinners", winnersJson);
+    /**
+     * Broadcasts a single label mark to every player.
+     *  The message is identical for every player, so it is serialized once; clients apply the mark to the board they
+     *  already have, and reload their board via getGameState if the version is not the one they expect.
+     */
+    protected void _broadcastMark(final Integer labelIndex, final Boolean isMarked, final Long jackpot, final Long version) {
+        Logger.trace("_broadcastMark");
 
-                _webSocketSendMessage(webSocket, responseJson.toString());
+        final Json responseJson = new Json();
+        responseJson.put("requestId", null);
+        responseJson.put("wasSuccess", 1);
+        responseJson.put("marked", labelIndex);
+        responseJson.put("isMarked", isMarked);
+        responseJson.put("jackpot", jackpot);
+        responseJson.put("version", version);
+
+        _broadcastToPlayers(responseJson, new WebSocketBinaryProtocol.Encoder() {
+            @Override
+            public byte[] encode() {
+                return WebSocketBinaryProtocol.encodeMark(labelIndex, isMarked, jackpot, version);
             }
+        });
+    }
+
+    /**
+     * Broadcasts a batch of label marks to every player as a single message.
+     *  The version is the version after the final mark; each mark advanced the version by one, so clients expecting
+     *  a version other than (version - markCount + 1) for the first mark reload their board.
+     */
+    protected void _broadcastMarks(final int[] labelIndexes, final boolean[] isMarked, final Long jackpot, final Long version) {
+        Logger.trace("_broadcastMarks");
+
+        final Json marksJson = new Json(true);
+        for (int i = 0; i < labelIndexes.length; ++i) {
+            final Json markJson = new Json(false);
+            markJson.put("marked", labelIndexes[i]);
+            markJson.put("isMarked", isMarked[i]);
+            marksJson.add(markJson);
         }
-        finally {
-            READ_LOCK.unlock();
-        }
+
+        final Json responseJson = new Json();
+        responseJson.put("requestId", null);
+        responseJson.put("wasSuccess", 1);
+        responseJson.put("markBatch", marksJson);
+        responseJson.put("jackpot", jackpot);
+        responseJson.put("version", version);
+
+        _broadcastToPlayers(responseJson, new WebSocketBinaryProtocol.Encoder() {
+            @Override
+            public byte[] encode() {
+                return WebSocketBinaryProtocol.encodeMarkBatch(labelIndexes, isMarked, jackpot, version);
+            }
+        });
     }
 
     protected void _registerAdminWebSocket(final WebSocket webSocket) {
-        WRITE_LOCK.lock();
-        try {
-            final Long webSocketId = webSocket.getId();
-            ADMIN_WEB_SOCKETS.put(webSocketId, webSocket);
-        }
-        finally {
-            WRITE_LOCK.unlock();
-        }
+        final Long webSocketId = webSocket.getId();
+        _adminWebSockets.put(webSocketId, webSocket);
     }
 
-    protected synchronized void _handleGetGlobalGameState(final Json request, final WebSocket webSocket) {
-        Logger.trace("_handleGetGlobalGameState " + webSocket.getId() + " " + request);
-        final Json parameters = request.get("parameters");
+    protected void _handleGetGlobalGameState(final QueryRequest request, final WebSocket webSocket) {
+        if (Logger.isTraceEnabled()) { Logger.trace("_handleGetGlobalGameState " + webSocket.getId() + " " + request); }
+        final Json parameters = request.getParameters();
         final String password = parameters.getString("password");
         if (! Util.areEqual(_adminPassword, password)) {
             _sendUnauthorizedRequest(request, webSocket);
@@ -347,29 +610,29 @@ public class WebSocketApi implements WebSocketServlet {
 
         _registerAdminWebSocket(webSocket);
 
-        final Integer requestId = request.getInteger("requestId");
+        final Integer requestId = request.getRequestId();
 
-        final Json globalGameStateJson;
-        READ_LOCK.lock();
-        try {
-            globalGameStateJson = _createGlobalGameStateJson();
-        }
-        finally {
-            READ_LOCK.unlock();
-        }
-
-        final Json responseJson = new Json();
-        responseJson.put("requestId", requestId);
-        responseJson.put("wasSuccess", 1);
-        responseJson.put("globalGameState", globalGameStateJson);
-
-        _webSocketSendMessage(webSocket, responseJson.toString());
+        _submitRequest(request, webSocket, new BingoStateEventLoop.Command<Json>() {
+            @Override
+            public Json run(final BingoState bingoState) {
+                final Json responseJson = new Json();
+                responseJson.put("requestId", requestId);
+                responseJson.put("wasSuccess", 1);
+                responseJson.put("globalGameState", _createGlobalGameStateJson(bingoState));
+                return responseJson;
+            }
+        });
     }
 
-    protected synchronized void _handleUpdateGlobalGameState(final Json request, final WebSocket webSocket) {
-        Logger.trace("_handleUpdateGlobalGameState " + webSocket.getId() + " " + request);
-        final Integer requestId = request.getInteger("requestId");
-        final Json parameters = request.get("parameters");
+    protected void _handleUpdateGlobalGameState(final QueryRequest request, final WebSocket webSocket) {
+        if (Logger.isTraceEnabled()) { Logger.trace("_handleUpdateGlobalGameState " + webSocket.getId() + " " + request); }
+        final Integer requestId = request.getRequestId();
+        if (_primary != null) {
+            _sendReadOnlyReplicaError(request, webSocket);
+            return;
+        }
+
+        final Json parameters = request.getParameters();
         final String password = parameters.getString("password");
         if (! Util.areEqual(_adminPassword, password)) {
             _sendUnauthorizedRequest(request, webSocket);
@@ -381,56 +644,104 @@ public class WebSocketApi implements WebSocketServlet {
         final Integer index = parameters.getInteger("index");
         final Boolean isMarked = parameters.getBoolean("isMarked");
 
-        final boolean hasNewBingoWinner;
-        final Json globalGameStateJson;
+        _submitRequest(request, webSocket, new BingoStateEventLoop.Command<Json>() {
+            @Override
+            public Json run(final BingoState bingoState) {
+                if (! _markLabel(bingoState, index, isMarked)) {
+                    final Json responseJson = new Json();
+                    responseJson.put("requestId", requestId);
+                    responseJson.put("wasSuccess", 0);
+                    responseJson.put("errorMessage", "Invalid label index.");
+                    return responseJson;
+                }
 
-        WRITE_LOCK.lock();
-        try { // Update the global game state...
-            final List<String> originalWinningBingoUsers = _bingoState.getWinningBingoUsers();
-            _bingoState.markLabel(index, isMarked);
-            final List<String> newWinningBingoUsers = _bingoState.getWinningBingoUsers();
+                final Json responseJson = new Json();
+                responseJson.put("requestId", requestId);
+                responseJson.put("wasSuccess", 1);
+                responseJson.put("globalGameState", _createGlobalGameStateJson(bingoState));
+                return responseJson;
+            }
+        });
+    }
 
-            globalGameStateJson = _createGlobalGameStateJson();
-            hasNewBingoWinner = (newWinningBingoUsers.getCount() > originalWinningBingoUsers.getCount());
-        }
-        finally {
-            WRITE_LOCK.unlock();
+    /**
+     * Marks the label and broadcasts the mark, and schedules a broadcast of the winners if there are new winners.
+     *  Must be invoked from the BingoStateEventLoop.
+     */
+    /**
+     * Marks the label and broadcasts the mark; returns false, without marking or broadcasting anything, if the index is not a label's.
+     *  Must be invoked from the BingoStateEventLoop.
+     */
+    protected Boolean _markLabel(final BingoState bingoState, final Integer index, final Boolean isMarked) {
+        if (! bingoState.isValidLabelIndex(index)) { return false; }
+
+        final int originalWinnerCount = bingoState.getWinnerCount();
+        bingoState.markLabel(index, isMarked);
+
+        _broadcastMark(index, isMarked, bingoState.getJackpot(), bingoState.getVersion());
+        _broadcastNewBingoWinners(bingoState, originalWinnerCount);
+        return true;
+    }
+
+    /**
+     * Marks the labels in order, so winners are recorded in the order their bingos were completed,
+     *  and then broadcasts every mark as a single message and schedules a broadcast of the winners if there are new winners.
+     *  Must be invoked from the BingoStateEventLoop.
+     */
+    protected void _markLabels(final BingoState bingoState, final int[] labelIndexes, final boolean[] isMarked) {
+        // Invalid label indexes are discarded, since they do not advance the version...
+        int validMarkCount = 0;
+        final int[] validLabelIndexes = new int[labelIndexes.length];
+        final boolean[] validIsMarked = new boolean[labelIndexes.length];
+        for (int i = 0; i < labelIndexes.length; ++i) {
+            if (! bingoState.isValidLabelIndex(labelIndexes[i])) { continue; }
+            validLabelIndexes[validMarkCount] = labelIndexes[i];
+            validIsMarked[validMarkCount] = isMarked[i];
+            validMarkCount += 1;
         }
+        if (validMarkCount == 0) { return; }
 
-        final Json responseJson = new Json();
-        responseJson.put("requestId", requestId);
-        responseJson.put("wasSuccess", 1);
-        responseJson.put("globalGameState", globalGameStateJson);
+        final int originalWinnerCount = bingoState.getWinnerCount();
+        for (int i = 0; i < validMarkCount; ++i) {
+            bingoState.markLabel(validLabelIndexes[i], validIsMarked[i]);
+        }
 
-        _webSocketSendMessage(webSocket, responseJson.toString());
+        _broadcastMarks(Arrays.copyOf(validLabelIndexes, validMarkCount), Arrays.copyOf(validIsMarked, validMarkCount), bingoState.getJackpot(), bingoState.getVersion());
+        _broadcastNewBingoWinners(bingoState, originalWinnerCount);
+    }
 
-        _broadcastGameState();
+    /**
+     * Must be invoked from the BingoStateEventLoop.
+     */
+    protected void _broadcastNewBingoWinners(final BingoState bingoState, final int originalWinnerCount) {
+        final int newWinnerCount = bingoState.getWinnerCount();
+        final boolean hasNewBingoWinner = (newWinnerCount > originalWinnerCount);
 
         if (hasNewBingoWinner) {
             if (Logger.isInfoEnabled()) {
-                READ_LOCK.lock();
-                try {
-                    final List<String> bingoWinners = _bingoState.getWinningBingoUsers();
-                    final String[] bingoWinnersArray = new String[bingoWinners.getCount()];
-                    for (int i = 0; i < bingoWinnersArray.length; ++i) {
-                        bingoWinnersArray[i] = bingoWinners.get(i);
-                    }
-
-                    Logger.info("Bingo Winners: " + Util.join(", ", bingoWinnersArray));
-                }
-                finally {
-                    READ_LOCK.unlock();
+                final List<Integer> winningPlayerIds = bingoState.getWinningPlayerIds();
+                final String[] bingoWinnersArray = new String[winningPlayerIds.getCount()];
+                for (int i = 0; i < bingoWinnersArray.length; ++i) {
+                    final Integer playerId = winningPlayerIds.get(i);
+                    bingoWinnersArray[i] = bingoState.getPlayerName(playerId);
                 }
+
+                Logger.info("Bingo Winners: " + Util.join(", ", bingoWinnersArray));
             }
 
-            _broadcastBingoWinners();
+            _scheduleBingoWinnersBroadcast();
         }
     }
 
-    protected synchronized void _handleSetHasPaid(final Json request, final WebSocket webSocket) {
-        Logger.trace("_handleSetHasPaid " + webSocket.getId() + " " + request);
-        final Integer requestId = request.getInteger("requestId");
-        final Json parameters = request.get("parameters");
+    protected void _handleUpdateGlobalGameStateBatch(final QueryRequest request, final WebSocket webSocket) {
+        if (Logger.isTraceEnabled()) { Logger.trace("_handleUpdateGlobalGameStateBatch " + webSocket.getId() + " " + request); }
+        final Integer requestId = request.getRequestId();
+        if (_primary != null) {
+            _sendReadOnlyReplicaError(request, webSocket);
+            return;
+        }
+
+        final Json parameters = request.getParameters();
         final String password = parameters.getString("password");
         if (! Util.areEqual(_adminPassword, password)) {
             _sendUnauthorizedRequest(request, webSocket);
@@ -439,41 +750,128 @@ public class WebSocketApi implements WebSocketServlet {
 
         _registerAdminWebSocket(webSocket);
 
-        WRITE_LOCK.lock();
-        try { // Update the global game state...
-            final String username = parameters.getString("username").toLowerCase();
-            final Boolean hasPaid = parameters.getBoolean("hasPaid");
+        final Json marksJson = parameters.get("marks");
+        final int markCount = marksJson.length();
+        if (markCount > MAX_MARK_BATCH_SIZE) {
+            final Json responseJson = new Json();
+            responseJson.put("requestId", requestId);
+            responseJson.put("wasSuccess", 0);
+            responseJson.put("errorMessage", "Too many marks; the maximum is " + MAX_MARK_BATCH_SIZE + ".");
+            _webSocketSendMessage(webSocket, responseJson.toString());
+            return;
+        }
 
-            _bingoState.setHasPaid(username, hasPaid);
-            Logger.info("Set " + username + " paid=" + hasPaid);
+        final int[] labelIndexes = new int[markCount];
+        final boolean[] isMarked = new boolean[markCount];
+        for (int i = 0; i < markCount; ++i) {
+            final Json markJson = marksJson.get(i);
+            labelIndexes[i] = Util.coalesce(markJson.getInteger("index"), -1);
+            isMarked[i] = Util.coalesce(markJson.getBoolean("isMarked"));
         }
-        finally {
-            WRITE_LOCK.unlock();
+
+        _submitRequest(request, webSocket, new BingoStateEventLoop.Command<Json>() {
+            @Override
+            public Json run(final BingoState bingoState) {
+                _markLabels(bingoState, labelIndexes, isMarked);
+
+                final Json responseJson = new Json();
+                responseJson.put("requestId", requestId);
+                responseJson.put("wasSuccess", 1);
+                responseJson.put("globalGameState", _createGlobalGameStateJson(bingoState));
+                return responseJson;
+            }
+        });
+    }
+
+    protected void _handleRegisterPlayers(final QueryRequest request, final WebSocket webSocket) {
+        if (Logger.isTraceEnabled()) { Logger.trace("_handleRegisterPlayers " + webSocket.getId()); }
+        final Integer requestId = request.getRequestId();
+        if (_primary != null) {
+            _sendReadOnlyReplicaError(request, webSocket);
+            return;
         }
 
-        final Json playersJson;
-        READ_LOCK.lock();
-        try {
-            playersJson = _createPlayersJson();
+        final Json parameters = request.getParameters();
+        final String password = parameters.getString("password");
+        if (! Util.areEqual(_adminPassword, password)) {
+            _sendUnauthorizedRequest(request, webSocket);
+            return;
         }
-        finally {
-            READ_LOCK.unlock();
+
+        _registerAdminWebSocket(webSocket);
+
+        final Json usernamesJson = parameters.get("usernames");
+        final int usernameCount = usernamesJson.length();
+        final ImmutableListBuilder<String> usernames = new ImmutableListBuilder<>(usernameCount);
+        for (int i = 0; i < usernameCount; ++i) {
+            final String username = usernamesJson.getString(i);
+            if (Util.isBlank(username)) { continue; }
+            usernames.add(username);
         }
 
-        _broadcastGameState();
+        this.registerPlayers(usernames.build(), new BingoStateEventLoop.Callback<Integer>() {
+            @Override
+            public void onComplete(final Integer newPlayerCount) {
+                final Json responseJson = new Json();
+                responseJson.put("requestId", requestId);
+                responseJson.put("wasSuccess", 1);
+                responseJson.put("newPlayerCount", newPlayerCount);
+                _webSocketSendMessage(webSocket, responseJson.toString());
+            }
 
-        final Json responseJson = new Json();
-        responseJson.put("requestId", requestId);
-        responseJson.put("wasSuccess", 1);
-        responseJson.put("players", playersJson);
+            @Override
+            public void onError(final Exception exception) {
+                _sendRequestFailedError(request, webSocket);
+            }
+        });
+    }
 
-        _webSocketSendMessage(webSocket, responseJson.toString());
+    protected void _handleSetHasPaid(final QueryRequest request, final WebSocket webSocket) {
+        if (Logger.isTraceEnabled()) { Logger.trace("_handleSetHasPaid " + webSocket.getId() + " " + request); }
+        final Integer requestId = request.getRequestId();
+        if (_primary != null) {
+            _sendReadOnlyReplicaError(request, webSocket);
+            return;
+        }
+
+        final Json parameters = request.getParameters();
+        final String password = parameters.getString("password");
+        if (! Util.areEqual(_adminPassword, password)) {
+            _sendUnauthorizedRequest(request, webSocket);
+            return;
+        }
+
+        _registerAdminWebSocket(webSocket);
+
+        final String username = _normalizeUsername(parameters.getString("username"));
+        if (username == null) {
+            _sendInvalidUsernameError(request, webSocket);
+            return;
+        }
+        final Boolean hasPaid = parameters.getBoolean("hasPaid");
+
+        _submitRequest(request, webSocket, new BingoStateEventLoop.Command<Json>() {
+            @Override
+            public Json run(final BingoState bingoState) {
+                final Integer playerId = bingoState.getPlayerId(username);
+                bingoState.setHasPaid(playerId, hasPaid);
+                Logger.info("Set " + username + " paid=" + hasPaid);
+
+                _scheduleJackpotBroadcast();
+
+                final Json responseJson = new Json();
+                responseJson.put("requestId", requestId);
+                responseJson.put("wasSuccess", 1);
+                responseJson.put("players", _createPlayersJson(bingoState));
+                return responseJson;
+            }
+        });
     }
 
-    protected void _sendUnauthorizedRequest(final Json request, final WebSocket webSocket) {
-        Logger.trace("_sendUnauthorizedRequest " + webSocket.getId() + " " + request);
+    protected void _sendUnauthorizedRequest(final QueryRequest request, final WebSocket webSocket) {
+        if (Logger.isTraceEnabled()) { Logger.trace("_sendUnauthorizedRequest " + webSocket.getId() + " " + request); }
 
-        final Integer requestId = request.getInteger("requestId");
+        final Integer requestId = request.getRequestId();
 
         final Json responseJson = new Json();
         responseJson.put("requestId", requestId);
@@ -483,82 +881,199 @@ public class WebSocketApi implements WebSocketServlet {
         _webSocketSendMessage(webSocket, responseJson.toString());
     }
 
-    protected void _handleGetBingoWinners(final Json request, final WebSocket webSocket) {
-        Logger.trace("_handleGetBingoWinners " + webSocket.getId() + " " + request);
+    protected void _sendInvalidUsernameError(final QueryRequest request, final WebSocket webSocket) {
+        final Json responseJson = new Json();
+        responseJson.put("requestId", request.getRequestId());
+        responseJson.put("wasSuccess", 0);
+        responseJson.put("errorMessage", "Invalid username; usernames must be between 1 and " + BingoState.MAX_PLAYER_NAME_BYTE_COUNT + " bytes.");
 
-        final Json winnersJson;
-        READ_LOCK.lock();
-        try {
-            winnersJson = _createWinnersJson();
-        }
-        finally {
-            READ_LOCK.unlock();
-        }
+        _webSocketSendMessage(webSocket, responseJson.toString());
+    }
 
+    protected void _sendRequestFailedError(final QueryRequest request, final WebSocket webSocket) {
         final Json responseJson = new Json();
-        responseJson.put("requestId", null);
-        responseJson.put("wasSuccess", 1);
-        responseJson.put("bingoWinners", winnersJson);
+        responseJson.put("requestId", request.getRequestId());
+        responseJson.put("wasSuccess", 0);
+        responseJson.put("errorMessage", "Unable to process request.");
+
+        _webSocketSendMessage(webSocket, responseJson.toString());
+    }
+
+    protected void _sendReadOnlyReplicaError(final QueryRequest request, final WebSocket webSocket) {
+        final Integer requestId = request.getRequestId();
+
+        final Json responseJson = new Json();
+        responseJson.put("requestId", requestId);
+        responseJson.put("wasSuccess", 0);
+        responseJson.put("errorMessage", "This server is a read-only replica; administer the game from the primary.");
 
         _webSocketSendMessage(webSocket, responseJson.toString());
     }
 
-    protected void _onMessage(final Json request, final WebSocket webSocket) {
-        final String query = request.getString("query");
+    protected void _handleGetBingoWinners(final QueryRequest request, final WebSocket webSocket) {
+        if (Logger.isTraceEnabled()) { Logger.trace("_handleGetBingoWinners " + webSocket.getId() + " " + request); }
 
-        switch (query) {
-            case "getLabels": {
+        _submitRequest(request, webSocket, new BingoStateEventLoop.Command<Json>() {
+            @Override
+            public Json run(final BingoState bingoState) {
+                final Json responseJson = new Json();
+                responseJson.put("requestId", null);
+                responseJson.put("wasSuccess", 1);
+                responseJson.put("bingoWinners", _createWinnersJson(bingoState));
+                return responseJson;
+            }
+        });
+    }
+
+    /**
+     * Registers each query's handler, along with the parameters the handler reads.
+     */
+    protected void _registerQueryHandlers() {
+        final QueryDispatcher.Parameter[] noParameters = new QueryDispatcher.Parameter[0];
+        final QueryDispatcher.Parameter username = new QueryDispatcher.Parameter("username", QueryDispatcher.ParameterType.STRING);
+        final QueryDispatcher.Parameter password = new QueryDispatcher.Parameter("password", QueryDispatcher.ParameterType.STRING);
+        final QueryDispatcher.Parameter index = new QueryDispatcher.Parameter("index", QueryDispatcher.ParameterType.INTEGER);
+        final QueryDispatcher.Parameter isMarked = new QueryDispatcher.Parameter("isMarked", QueryDispatcher.ParameterType.BOOLEAN);
+        final QueryDispatcher.Parameter marks = new QueryDispatcher.Parameter("marks", QueryDispatcher.ParameterType.ARRAY);
+        final QueryDispatcher.Parameter hasPaid = new QueryDispatcher.Parameter("hasPaid", QueryDispatcher.ParameterType.BOOLEAN);
+        final QueryDispatcher.Parameter usernames = new QueryDispatcher.Parameter("usernames", QueryDispatcher.ParameterType.ARRAY);
+
+        _queryDispatcher.register("getLabels", noParameters, new QueryDispatcher.Handler() {
+            @Override
+            public void handle(final QueryRequest request, final WebSocket webSocket) {
                 _handleGetLabels(request, webSocket);
-            } break;
+            }
+        });
 
-            case "getJackpot": {
+        _queryDispatcher.register("getJackpot", noParameters, new QueryDispatcher.Handler() {
+            @Override
+            public void handle(final QueryRequest request, final WebSocket webSocket) {
                 _handleGetJackpot(request, webSocket);
-            } break;
+            }
+        });
 
-            case "getPlayers": {
+        _queryDispatcher.register("getPlayers", noParameters, new QueryDispatcher.Handler() {
+            @Override
+            public void handle(final QueryRequest request, final WebSocket webSocket) {
                 _handleGetPlayers(request, webSocket);
-            } break;
+            }
+        });
 
-            case "getWinners": {
+        _queryDispatcher.register("getWinners", noParameters, new QueryDispatcher.Handler() {
+            @Override
+            public void handle(final QueryRequest request, final WebSocket webSocket) {
                 _handleGetWinners(request, webSocket);
-            } break;
+            }
+        });
 
-            case "getGameState": {
+        _queryDispatcher.register("getGameState", new QueryDispatcher.Parameter[]{ username }, new QueryDispatcher.Handler() {
+            @Override
+            public void handle(final QueryRequest request, final WebSocket webSocket) {
                 _handleGetGameState(request, webSocket);
-            } break;
+            }
+        });
 
-            case "getGlobalGameState": {
+        _queryDispatcher.register("getGlobalGameState", new QueryDispatcher.Parameter[]{ password }, new QueryDispatcher.Handler() {
+            @Override
+            public void handle(final QueryRequest request, final WebSocket webSocket) {
                 _handleGetGlobalGameState(request, webSocket);
-            } break;
+            }
+        });
 
-            case "updateGlobalGameState": {
+        _queryDispatcher.register("updateGlobalGameState", new QueryDispatcher.Parameter[]{ password, index, isMarked }, new QueryDispatcher.Handler() {
+            @Override
+            public void handle(final QueryRequest request, final WebSocket webSocket) {
                 _handleUpdateGlobalGameState(request, webSocket);
-            } break;
+            }
+        });
 
-            case "setHasPaid": {
+        _queryDispatcher.register("updateGlobalGameStateBatch", new QueryDispatcher.Parameter[]{ password, marks }, new QueryDispatcher.Handler() {
+            @Override
+            public void handle(final QueryRequest request, final WebSocket webSocket) {
+                _handleUpdateGlobalGameStateBatch(request, webSocket);
+            }
+        });
+
+        _queryDispatcher.register("setHasPaid", new QueryDispatcher.Parameter[]{ password, username, hasPaid }, new QueryDispatcher.Handler() {
+            @Override
+            public void handle(final QueryRequest request, final WebSocket webSocket) {
                 _handleSetHasPaid(request, webSocket);
-            } break;
+            }
+        });
 
-            case "getBingoWinners": {
+        _queryDispatcher.register("getBingoWinners", noParameters, new QueryDispatcher.Handler() {
+            @Override
+            public void handle(final QueryRequest request, final WebSocket webSocket) {
                 _handleGetBingoWinners(request, webSocket);
-            } break;
+            }
+        });
 
-            default: {
-                final Integer requestId = request.getInteger("requestId");
+        _queryDispatcher.register("registerPlayers", new QueryDispatcher.Parameter[]{ password, usernames }, new QueryDispatcher.Handler() {
+            @Override
+            public void handle(final QueryRequest request, final WebSocket webSocket) {
+                _handleRegisterPlayers(request, webSocket);
+            }
+        });
+    }
 
-                final Json responseJson = new Json();
-                responseJson.put("requestId", requestId);
-                responseJson.put("wasSuccess", 0);
-                responseJson.put("errorMessage", "Unknown query: " + query);
+    /**
+     * Queues the message to be sent to the WebSocket; the message is sent asynchronously by the thread pool.
+     */
+    protected void _webSocketSendMessage(final WebSocket webSocket, final String message) {
+        if (Logger.isTraceEnabled()) { Logger.trace("SENDING: " + webSocket.getId() + " " + message); }
 
-                _webSocketSendMessage(webSocket, responseJson.toString());
+        final Long webSocketId = webSocket.getId();
+        final OutboundQueue outboundQueue = _outboundQueues.get(webSocketId);
+        if (outboundQueue == null) { return; } // The WebSocket has been closed.
+        outboundQueue.enqueue(message, null);
+    }
+
+    /**
+     * Associates the WebSocket with the player, unless the WebSocket has already been closed.
+     *  NOTE: _removeWebSocket removes the OutboundQueue before the player id, so either this check sees the WebSocket as closed
+     *  or the removal happens afterward and removes the player id itself; a closed WebSocket's player id is never left behind.
+     */
+    protected void _setPlayerId(final Long webSocketId, final Integer playerId) {
+        _playerIds.put(webSocketId, playerId);
+
+        if (! _outboundQueues.containsKey(webSocketId)) {
+            if (_playerIds.remove(webSocketId, playerId)) {
+                _evictGameState(playerId);
             }
         }
     }
 
-    protected void _webSocketSendMessage(final WebSocket webSocket, final String message) {
-        Logger.trace("SENDING: " + webSocket.getId() + " " + message);
-        webSocket.sendMessage(message);
+    /**
+     * Evicts the player's cached gameState, unless the player is still connected through another WebSocket.
+     *  NOTE: A WebSocket closing concurrently may leave the entry behind; the GameStateCache eventually evicts it as least recently used...
+     */
+    protected void _evictGameState(final Integer playerId) {
+        if (_playerIds.containsValue(playerId)) { return; }
+        _gameStateCache.evict(playerId);
+    }
+
+    /**
+     * Removes the WebSocket from every broadcast audience and discards its queued messages; may be invoked more than once.
+     */
+    protected void _removeWebSocket(final Long webSocketId) {
+        final WebSocket removedWebSocket = _webSockets.remove(webSocketId);
+        if (removedWebSocket != null) {
+            _bingoMetrics.onWebSocketDisconnected();
+        }
+        _heartbeatManager.unregister(webSocketId);
+
+        // The OutboundQueue must be removed before the player id; see WebSocketApi::_setPlayerId...
+        final OutboundQueue outboundQueue = _outboundQueues.remove(webSocketId);
+        if (outboundQueue != null) {
+            outboundQueue.close();
+        }
+
+        final Integer playerId = _playerIds.remove(webSocketId);
+        if (playerId != null) {
+            _evictGameState(playerId);
+        }
+        _adminWebSockets.remove(webSocketId);
+        _binaryWebSocketIds.remove(webSocketId);
     }
 
     @Override
@@ -568,6 +1083,11 @@ public class WebSocketApi implements WebSocketServlet {
             final Long webSocketId = _nextSocketId.getAndIncrement();
             webSocketResponse.setWebSocketId(webSocketId);
             webSocketResponse.upgradeToWebSocket();
+
+            final GetParameters getParameters = webSocketRequest.getGetParameters();
+            if ( (getParameters != null) && Util.areEqual(WebSocketBinaryProtocol.BINARY_ENCODING, getParameters.get(WebSocketBinaryProtocol.ENCODING_PARAMETER_NAME)) ) {
+                _binaryWebSocketIds.put(webSocketId, true);
+            }
         }
         return webSocketResponse;
     }
@@ -580,20 +1100,16 @@ public class WebSocketApi implements WebSocketServlet {
         }
 
         final Long webSocketId = webSocket.getId();
-        WRITE_LOCK.lock();
-        try {
-            WEB_SOCKETS.put(webSocketId, webSocket);
-        }
-        finally {
-            WRITE_LOCK.unlock();
-        }
+        _outboundQueues.put(webSocketId, new OutboundQueue(webSocket, _threadPool, _bingoMetrics));
+        _webSockets.put(webSocketId, webSocket);
+        _bingoMetrics.onWebSocketConnected();
+        _heartbeatManager.register(webSocketId);
 
         webSocket.setMessageReceivedCallback(new WebSocket.MessageReceivedCallback() {
             @Override
             public void onMessage(final String request) {
                 try {
-                    final Json requestJson = Json.parse(request);
-                    _onMessage(requestJson, webSocket);
+                    _queryDispatcher.dispatch(request, webSocket);
                 }
                 catch (final Exception exception) {
                     Logger.debug(exception);
@@ -604,41 +1120,188 @@ public class WebSocketApi implements WebSocketServlet {
         webSocket.setConnectionClosedCallback(new WebSocket.ConnectionClosedCallback() {
             @Override
             public void onClose(final int code, final String message) {
-                WRITE_LOCK.lock();
-                try {
-                    WEB_SOCKETS.remove(webSocketId);
-                    USERNAMES.remove(webSocketId);
-                }
-                finally {
-                    WRITE_LOCK.unlock();
-                }
+                _removeWebSocket(webSocketId);
             }
         });
 
         webSocket.startListening();
     }
 
+    /**
+     * Creates a BingoGame for each of the usernames that do not already have one.
+     *  The boards are generated in parallel on the calling thread, then registered via a single BingoStateEventLoop command.
+     *  Invalid usernames are skipped; see WebSocketApi::_normalizeUsername.
+     *  The callback, which may be null, receives the number of players that were created, or the exception if the boards could not be created.
+     */
+    public void registerPlayers(final List<String> usernames, final BingoStateEventLoop.Callback<Integer> callback) {
+        final ImmutableListBuilder<String> normalizedUsernamesBuilder = new ImmutableListBuilder<>(usernames.getCount());
+        for (final String username : usernames) {
+            final String normalizedUsername = _normalizeUsername(username);
+            if (normalizedUsername == null) {
+                Logger.info("Skipping invalid username of " + (username != null ? username.length() : 0) + " characters.");
+                continue;
+            }
+            normalizedUsernamesBuilder.add(normalizedUsername);
+        }
+        final List<String> normalizedUsernames = normalizedUsernamesBuilder.build();
+        final int usernameCount = normalizedUsernames.getCount();
+
+        final long startTime = System.currentTimeMillis();
+        final int[][] layouts;
+        try {
+            layouts = _eventLoop.readConcurrently(new BingoStateEventLoop.Command<int[][]>() {
+                @Override
+                public int[][] run(final BingoState bingoState) {
+                    final ImmutableListBuilder<Long> seeds = new ImmutableListBuilder<>(usernameCount);
+                    for (final String username : normalizedUsernames) {
+                        seeds.add(bingoState.getBoardSeed(username));
+                    }
+
+                    final Integer labelCount = bingoState.getSquareLabels().getCount();
+                    return _boardGenerator.generateLayouts(seeds.build(), labelCount);
+                }
+            });
+        }
+        catch (final RuntimeException exception) {
+            Logger.warn("Unable to generate boards.", exception);
+            if (callback != null) {
+                callback.onError(exception);
+            }
+            return;
+        }
+        final long generatedTime = System.currentTimeMillis();
+
+        _eventLoop.submit(new BingoStateEventLoop.Command<Integer>() {
+            @Override
+            public Integer run(final BingoState bingoState) {
+                int newPlayerCount = 0;
+                for (int i = 0; i < usernameCount; ++i) {
+                    final String username = normalizedUsernames.get(i);
+                    if (bingoState.getPlayerId(username) != null) { continue; }
+
+                    bingoState.newBingoGame(username, layouts[i]);
+                    newPlayerCount += 1;
+                }
+
+                final long registeredTime = System.currentTimeMillis();
+                Logger.info("Registered " + newPlayerCount + " of " + usernameCount + " players. generate=" + (generatedTime - startTime) + "ms, register=" + (registeredTime - generatedTime) + "ms");
+
+                if (newPlayerCount > 0) {
+                    _schedulePlayerListBroadcast();
+                }
+
+                return newPlayerCount;
+            }
+        }, callback);
+    }
+
+    /**
+     * Makes this WebSocketApi serve a read replica of a room owned by a primary node.
+     *  Administrative queries are rejected, and new players are created by the primary; must be called before WebSocketApi::start.
+     */
+    public void setPrimary(final ReplicaClient primary) {
+        _primary = primary;
+    }
+
+    /**
+     * Applies a join replicated from the primary, and answers any getGameState requests waiting on it.
+     */
+    public void applyReplicatedJoin(final String username) {
+        _eventLoop.submit(new BingoStateEventLoop.Command<Void>() {
+            @Override
+            public Void run(final BingoState bingoState) {
+                if (bingoState.getPlayerId(username) == null) {
+                    bingoState.newBingoGame(username);
+                    _schedulePlayerListBroadcast();
+                }
+
+                _completePendingGameStateRequests(bingoState, username);
+                return null;
+            }
+        }, null);
+    }
+
+    /**
+     * Fails the getGameState requests waiting on the primary to replicate the player's join, or every waiting request if username is null;
+     *  invoked when the join request could not be forwarded, or the connection to the primary was lost.
+     */
+    public void failReplicatedJoins(final String username) {
+        _eventLoop.submit(new BingoStateEventLoop.Command<Void>() {
+            @Override
+            public Void run(final BingoState bingoState) {
+                final MutableList<PendingGameStateRequest> failedRequests = new MutableList<>();
+                if (username != null) {
+                    final MutableList<PendingGameStateRequest> pendingRequests = _pendingGameStateRequests.remove(username);
+                    if (pendingRequests != null) {
+                        failedRequests.addAll(pendingRequests);
+                    }
+                }
+                else {
+                    for (final MutableList<PendingGameStateRequest> pendingRequests : _pendingGameStateRequests.values()) {
+                        failedRequests.addAll(pendingRequests);
+                    }
+                    _pendingGameStateRequests.clear();
+                }
+
+                for (final PendingGameStateRequest pendingRequest : failedRequests) {
+                    final Json responseJson = new Json();
+                    responseJson.put("requestId", pendingRequest.requestId);
+                    responseJson.put("wasSuccess", 0);
+                    responseJson.put("errorMessage", "Unable to create the player; the primary server is unavailable.");
+                    _webSocketSendMessage(pendingRequest.webSocket, responseJson.toString());
+                }
+                return null;
+            }
+        }, null);
+    }
+
+    /**
+     * Applies a mark replicated from the primary, and broadcasts it to this node's players.
+     */
+    public void applyReplicatedMark(final Integer labelIndex, final Boolean isMarked) {
+        _eventLoop.submit(new BingoStateEventLoop.Command<Void>() {
+            @Override
+            public Void run(final BingoState bingoState) {
+                _markLabel(bingoState, labelIndex, isMarked);
+                return null;
+            }
+        }, null);
+    }
+
+    /**
+     * Applies a paid change replicated from the primary, and schedules a broadcast of the new jackpot to this node's WebSockets.
+     */
+    public void applyReplicatedPaid(final Integer playerId, final Boolean hasPaid) {
+        _eventLoop.submit(new BingoStateEventLoop.Command<Void>() {
+            @Override
+            public Void run(final BingoState bingoState) {
+                bingoState.setHasPaid(playerId, hasPaid);
+                _scheduleJackpotBroadcast();
+                return null;
+            }
+        }, null);
+    }
+
     public void start() {
-        _threadPool.start();
-        _pingThread.start();
+        _heartbeatManager.start();
     }
 
     public void stop() {
         _isShuttingDown = true;
 
-        _threadPool.stop();
-        _pingThread.interrupt();
+        _heartbeatManager.stop();
+        _boardGenerator.stop();
 
-        WRITE_LOCK.lock();
-        try {
-            for (final WebSocket webSocket : WEB_SOCKETS.values()) {
-                webSocket.close();
-            }
-            WEB_SOCKETS.clear();
-            USERNAMES.clear();
+        for (final WebSocket webSocket : _webSockets.values()) {
+            webSocket.close();
         }
-        finally {
-            WRITE_LOCK.unlock();
+        _webSockets.clear();
+        _playerIds.clear();
+        _adminWebSockets.clear();
+
+        for (final OutboundQueue outboundQueue : _outboundQueues.values()) {
+            outboundQueue.close();
         }
+        _outboundQueues.clear();
     }
 }
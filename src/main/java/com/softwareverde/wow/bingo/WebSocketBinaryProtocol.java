@@ -0,0 +1,74 @@
+package com.softwareverde.wow.bingo;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The compact binary encoding of the game state messages, sent to WebSockets that connect with "?encoding=binary"; WebSockets are sent Json by default.
+ *  Every other message, and every request, remains Json.  All values are big-endian; the first byte of each frame is its type.
+ *
+ *  GAME_STATE  [type:u8][requestId:u32][width:u8][cellCount:u8][labelIndex:u16]...[marks:u32][jackpot:i64][version:i64][seed:i64]
+ *  MARK        [type:u8][labelIndex:u16][isMarked:u8][jackpot:i64][version:i64]
+ *  MARK_BATCH  [type:u8][markCount:u16]([labelIndex:u16][isMarked:u8])...[jackpot:i64][version:i64]
+ *
+ *  A board is sent once, as GAME_STATE, whose marks are a bitmask where cell (x, y) is bit (x + (y * width)); afterwards it is updated
+ *  by the MARK and MARK_BATCH broadcasts, which are identical for every player.  Jackpot-only changes are sent as Json.
+ *  A requestId of 0 denotes a push rather than a response.
+ */
+public class WebSocketBinaryProtocol {
+    public static final String ENCODING_PARAMETER_NAME = "encoding";
+    public static final String BINARY_ENCODING = "binary";
+
+    public static final byte GAME_STATE = 1;
+    // Type 2 is retired; it was a per-player bitmask of marks.
+    public static final byte MARK = 3;
+    public static final byte MARK_BATCH = 4;
+
+    /**
+     * Defers encoding a binary frame until it is known to be needed.
+     */
+    public interface Encoder {
+        byte[] encode();
+    }
+
+    public static byte[] encodeGameState(final Integer requestId, final BingoGame bingoGame, final Long jackpot, final Long version) {
+        final int cellCount = BingoGame.BOARD_SIZE;
+        final ByteBuffer byteBuffer = ByteBuffer.allocate(1 + 4 + 1 + 1 + (cellCount * 2) + 4 + 8 + 8 + 8);
+        byteBuffer.put(GAME_STATE);
+        byteBuffer.putInt(requestId != null ? requestId : 0);
+        byteBuffer.put((byte) (int) BingoGame.BOARD_WIDTH);
+        byteBuffer.put((byte) cellCount);
+        for (int i = 0; i < cellCount; ++i) {
+            byteBuffer.putShort((short) bingoGame.getLabelIndex(i));
+        }
+        byteBuffer.putInt(bingoGame.getMarks());
+        byteBuffer.putLong(jackpot);
+        byteBuffer.putLong(version);
+        byteBuffer.putLong(bingoGame.getSeed());
+        return byteBuffer.array();
+    }
+
+    public static byte[] encodeMark(final Integer labelIndex, final Boolean isMarked, final Long jackpot, final Long version) {
+        final ByteBuffer byteBuffer = ByteBuffer.allocate(1 + 2 + 1 + 8 + 8);
+        byteBuffer.put(MARK);
+        byteBuffer.putShort((short) (int) labelIndex);
+        byteBuffer.put((byte) (isMarked ? 1 : 0));
+        byteBuffer.putLong(jackpot);
+        byteBuffer.putLong(version);
+        return byteBuffer.array();
+    }
+
+    public static byte[] encodeMarkBatch(final int[] labelIndexes, final boolean[] isMarked, final Long jackpot, final Long version) {
+        final ByteBuffer byteBuffer = ByteBuffer.allocate(1 + 2 + (labelIndexes.length * 3) + 8 + 8);
+        byteBuffer.put(MARK_BATCH);
+        byteBuffer.putShort((short) labelIndexes.length);
+        for (int i = 0; i < labelIndexes.length; ++i) {
+            byteBuffer.putShort((short) labelIndexes[i]);
+            byteBuffer.put((byte) (isMarked[i] ? 1 : 0));
+        }
+        byteBuffer.putLong(jackpot);
+        byteBuffer.putLong(version);
+        return byteBuffer.array();
+    }
+
+    protected WebSocketBinaryProtocol() { }
+}
@@ -0,0 +1,274 @@
+package com.softwareverde.wow.bingo;
+
+import com.softwareverde.http.websocket.WebSocket;
+import com.softwareverde.logging.LogLevel;
+import com.softwareverde.logging.Logger;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+public class QueryDispatcherTests {
+    protected static final String[] MEMBER_NAMES = { "query", "requestId", "parameters" };
+
+    /**
+     * Records the dispatcher's callbacks; the dispatched WebSocket is null, since it is only passed through.
+     */
+    protected static class RecordingListener implements QueryDispatcher.Listener {
+        public final ArrayList<Long> pongs = new ArrayList<>();
+        public final ArrayList<Integer> invalidRequestIds = new ArrayList<>();
+        public final ArrayList<String> errorMessages = new ArrayList<>();
+
+        @Override
+        public void onPong(final WebSocket webSocket, final Long nonce) {
+            this.pongs.add(nonce);
+        }
+
+        @Override
+        public void onInvalidRequest(final WebSocket webSocket, final Integer requestId, final String errorMessage) {
+            this.invalidRequestIds.add(requestId);
+            this.errorMessages.add(errorMessage);
+        }
+    }
+
+    protected static class RecordingHandler implements QueryDispatcher.Handler {
+        public final ArrayList<QueryRequest> requests = new ArrayList<>();
+
+        @Override
+        public void handle(final QueryRequest request, final WebSocket webSocket) {
+            this.requests.add(request);
+        }
+    }
+
+    protected static String _getMember(final String text, final String[] memberNames, final String memberName) {
+        final int[] spans = new int[memberNames.length * 2];
+        Assert.assertTrue(QueryDispatcher._scanObject(text, 0, text.length(), memberNames, spans));
+
+        for (int i = 0; i < memberNames.length; ++i) {
+            if (! memberNames[i].equals(memberName)) { continue; }
+            if (spans[2 * i] < 0) { return null; }
+            return text.substring(spans[2 * i], spans[(2 * i) + 1]);
+        }
+        return null;
+    }
+
+    protected static Boolean _isMalformed(final String text) {
+        final int[] spans = new int[MEMBER_NAMES.length * 2];
+        return (! QueryDispatcher._scanObject(text, 0, text.length(), MEMBER_NAMES, spans));
+    }
+
+    protected RecordingListener _listener;
+    protected RecordingHandler _handler;
+    protected QueryDispatcher _queryDispatcher;
+
+    @Before
+    public void setUp() {
+        Logger.setLogLevel(LogLevel.WARN);
+
+        _listener = new RecordingListener();
+        _handler = new RecordingHandler();
+        _queryDispatcher = new QueryDispatcher(_listener, new BingoMetrics());
+        _queryDispatcher.register("getGameState", new QueryDispatcher.Parameter[0], _handler);
+        _queryDispatcher.register("updateGlobalGameState", new QueryDispatcher.Parameter[]{
+            new QueryDispatcher.Parameter("password", QueryDispatcher.ParameterType.STRING),
+            new QueryDispatcher.Parameter("index", QueryDispatcher.ParameterType.INTEGER),
+            new QueryDispatcher.Parameter("isMarked", QueryDispatcher.ParameterType.BOOLEAN)
+        }, _handler);
+    }
+
+    @Test
+    public void should_locate_top_level_members() {
+        final String frame = " { \"query\" : \"getGameState\" , \"requestId\" : 7 , \"parameters\" : { \"username\" : \"alice\" } } ";
+
+        Assert.assertEquals("\"getGameState\"", _getMember(frame, MEMBER_NAMES, "query"));
+        Assert.assertEquals("7", _getMember(frame, MEMBER_NAMES, "requestId"));
+        Assert.assertEquals("{ \"username\" : \"alice\" }", _getMember(frame, MEMBER_NAMES, "parameters"));
+    }
+
+    @Test
+    public void should_skip_escaped_quotes_and_backslashes_within_strings() {
+        final String frame = "{\"parameters\":{\"username\":\"a\\\"}b\\\\\"},\"query\":\"x\\\"y\",\"requestId\":1}";
+
+        Assert.assertEquals("{\"username\":\"a\\\"}b\\\\\"}", _getMember(frame, MEMBER_NAMES, "parameters"));
+        Assert.assertEquals("\"x\\\"y\"", _getMember(frame, MEMBER_NAMES, "query"));
+        Assert.assertEquals("1", _getMember(frame, MEMBER_NAMES, "requestId"));
+    }
+
+    @Test
+    public void should_not_match_members_of_nested_values() {
+        final String frame = "{\"parameters\":{\"query\":\"nested\",\"list\":[1,{\"requestId\":2},\"]}\"]},\"requestId\":3}";
+
+        Assert.assertNull(_getMember(frame, MEMBER_NAMES, "query"));
+        Assert.assertEquals("3", _getMember(frame, MEMBER_NAMES, "requestId"));
+        Assert.assertEquals("{\"query\":\"nested\",\"list\":[1,{\"requestId\":2},\"]}\"]}", _getMember(frame, MEMBER_NAMES, "parameters"));
+    }
+
+    @Test
+    public void should_use_the_last_of_duplicate_members() {
+        final String frame = "{\"query\":\"first\",\"requestId\":1,\"query\":\"second\"}";
+
+        Assert.assertEquals("\"second\"", _getMember(frame, MEMBER_NAMES, "query"));
+    }
+
+    @Test
+    public void should_reject_truncated_frames() {
+        Assert.assertTrue(_isMalformed(""));
+        Assert.assertTrue(_isMalformed("{"));
+        Assert.assertTrue(_isMalformed("{\"query\""));
+        Assert.assertTrue(_isMalformed("{\"query\":"));
+        Assert.assertTrue(_isMalformed("{\"query\":\"getGameState"));
+        Assert.assertTrue(_isMalformed("{\"query\":\"getGameState\""));
+        Assert.assertTrue(_isMalformed("{\"query\":\"getGameState\","));
+        Assert.assertTrue(_isMalformed("{\"parameters\":{\"username\":\"alice\"}"));
+        Assert.assertTrue(_isMalformed("{\"parameters\":[1,2"));
+        Assert.assertTrue(_isMalformed("{\"query\":\"a\\\"}"));
+    }
+
+    @Test
+    public void should_reject_frames_that_are_not_objects() {
+        Assert.assertTrue(_isMalformed("[]"));
+        Assert.assertTrue(_isMalformed("\"query\""));
+        Assert.assertTrue(_isMalformed("{query:\"getGameState\"}"));
+        Assert.assertTrue(_isMalformed("{\"query\" \"getGameState\"}"));
+        Assert.assertTrue(_isMalformed("{\"query\":\"getGameState\" \"requestId\":1}"));
+        Assert.assertFalse(_isMalformed("{}"));
+        Assert.assertFalse(_isMalformed(" { } "));
+    }
+
+    @Test
+    public void should_parse_integers_and_nulls() {
+        Assert.assertEquals(Long.valueOf(42L), QueryDispatcher._parseLong("x42x", 1, 3));
+        Assert.assertEquals(Long.valueOf(-7L), QueryDispatcher._parseLong("-7", 0, 2));
+        Assert.assertNull(QueryDispatcher._parseLong("null", 0, 4));
+        Assert.assertNull(QueryDispatcher._parseLong("1.5", 0, 3));
+        Assert.assertNull(QueryDispatcher._parseLong("\"1\"", 0, 3));
+        Assert.assertTrue(QueryDispatcher._isNull("null", 0, 4));
+        Assert.assertFalse(QueryDispatcher._isNull("nullx", 0, 5));
+    }
+
+    @Test
+    public void should_reject_truncated_frames_as_malformed_requests() {
+        _queryDispatcher.dispatch("{\"query\":\"getGameState\",\"requestId\":5", null);
+
+        Assert.assertEquals(0, _handler.requests.size());
+        Assert.assertEquals(1, _listener.errorMessages.size());
+        Assert.assertEquals(QueryDispatcher.MALFORMED_REQUEST_ERROR, _listener.errorMessages.get(0));
+        Assert.assertNull(_listener.invalidRequestIds.get(0));
+    }
+
+    @Test
+    public void should_reject_non_string_queries_as_unknown() {
+        final String[] frames = {
+            "{\"query\":7,\"requestId\":1}",
+            "{\"query\":null,\"requestId\":2}",
+            "{\"query\":{\"name\":\"getGameState\"},\"requestId\":3}",
+            "{\"query\":[\"getGameState\"],\"requestId\":4}",
+            "{\"query\":true,\"requestId\":5}"
+        };
+        for (final String frame : frames) {
+            _queryDispatcher.dispatch(frame, null);
+        }
+
+        Assert.assertEquals(0, _handler.requests.size());
+        Assert.assertEquals(frames.length, _listener.errorMessages.size());
+        for (int i = 0; i < frames.length; ++i) {
+            Assert.assertEquals(QueryDispatcher.UNKNOWN_QUERY_ERROR, _listener.errorMessages.get(i));
+            Assert.assertEquals(Integer.valueOf(i + 1), _listener.invalidRequestIds.get(i));
+        }
+    }
+
+    @Test
+    public void should_reject_escaped_and_unregistered_queries_as_unknown() {
+        _queryDispatcher.dispatch("{\"query\":\"getGame\\u0053tate\",\"requestId\":1}", null);
+        _queryDispatcher.dispatch("{\"query\":\"markSquare\",\"requestId\":2}", null);
+
+        Assert.assertEquals(0, _handler.requests.size());
+        Assert.assertEquals(2, _listener.errorMessages.size());
+        Assert.assertEquals(QueryDispatcher.UNKNOWN_QUERY_ERROR, _listener.errorMessages.get(0));
+        Assert.assertEquals(QueryDispatcher.UNKNOWN_QUERY_ERROR, _listener.errorMessages.get(1));
+    }
+
+    @Test
+    public void should_reject_request_ids_that_are_not_integers() {
+        _queryDispatcher.dispatch("{\"query\":\"getGameState\",\"requestId\":\"1\"}", null);
+        _queryDispatcher.dispatch("{\"query\":\"getGameState\",\"requestId\":4294967296}", null);
+
+        Assert.assertEquals(0, _handler.requests.size());
+        Assert.assertEquals(2, _listener.errorMessages.size());
+        Assert.assertEquals(QueryDispatcher.MALFORMED_REQUEST_ERROR, _listener.errorMessages.get(0));
+        Assert.assertEquals(QueryDispatcher.MALFORMED_REQUEST_ERROR, _listener.errorMessages.get(1));
+    }
+
+    @Test
+    public void should_route_registered_queries_using_the_last_duplicate() {
+        _queryDispatcher.dispatch("{\"query\":\"markSquare\",\"requestId\":1,\"query\":\"getGameState\",\"requestId\":9}", null);
+
+        Assert.assertEquals(0, _listener.errorMessages.size());
+        Assert.assertEquals(1, _handler.requests.size());
+        Assert.assertEquals("getGameState", _handler.requests.get(0).getQuery());
+        Assert.assertEquals(Integer.valueOf(9), _handler.requests.get(0).getRequestId());
+    }
+
+    @Test
+    public void should_reject_requests_missing_a_declared_parameter() {
+        _queryDispatcher.dispatch("{\"query\":\"updateGlobalGameState\",\"requestId\":1}", null);
+        _queryDispatcher.dispatch("{\"query\":\"updateGlobalGameState\",\"requestId\":2,\"parameters\":null}", null);
+        _queryDispatcher.dispatch("{\"query\":\"updateGlobalGameState\",\"requestId\":3,\"parameters\":{\"password\":\"x\",\"isMarked\":1}}", null);
+        _queryDispatcher.dispatch("{\"query\":\"updateGlobalGameState\",\"requestId\":4,\"parameters\":{\"password\":\"x\",\"index\":null,\"isMarked\":1}}", null);
+
+        Assert.assertEquals(0, _handler.requests.size());
+        Assert.assertEquals(4, _listener.errorMessages.size());
+        Assert.assertEquals(QueryDispatcher.INVALID_PARAMETER_ERROR + "password.", _listener.errorMessages.get(0));
+        Assert.assertEquals(QueryDispatcher.INVALID_PARAMETER_ERROR + "password.", _listener.errorMessages.get(1));
+        Assert.assertEquals(QueryDispatcher.INVALID_PARAMETER_ERROR + "index.", _listener.errorMessages.get(2));
+        Assert.assertEquals(QueryDispatcher.INVALID_PARAMETER_ERROR + "index.", _listener.errorMessages.get(3));
+        for (int i = 0; i < 4; ++i) {
+            Assert.assertEquals(Integer.valueOf(i + 1), _listener.invalidRequestIds.get(i));
+        }
+    }
+
+    @Test
+    public void should_reject_declared_parameters_of_the_wrong_type() {
+        final String[] parameters = {
+            "{\"password\":7,\"index\":1,\"isMarked\":1}",
+            "{\"password\":\"x\",\"index\":\"1\",\"isMarked\":1}",
+            "{\"password\":\"x\",\"index\":1.5,\"isMarked\":1}",
+            "{\"password\":\"x\",\"index\":4294967296,\"isMarked\":1}",
+            "{\"password\":\"x\",\"index\":1,\"isMarked\":\"true\"}",
+            "{\"password\":\"x\",\"index\":1,\"isMarked\":[1]}"
+        };
+        final String[] invalidParameterNames = { "password", "index", "index", "index", "isMarked", "isMarked" };
+        for (final String parameter : parameters) {
+            _queryDispatcher.dispatch("{\"query\":\"updateGlobalGameState\",\"requestId\":1,\"parameters\":" + parameter + "}", null);
+        }
+
+        Assert.assertEquals(0, _handler.requests.size());
+        Assert.assertEquals(parameters.length, _listener.errorMessages.size());
+        for (int i = 0; i < parameters.length; ++i) {
+            Assert.assertEquals(QueryDispatcher.INVALID_PARAMETER_ERROR + invalidParameterNames[i] + ".", _listener.errorMessages.get(i));
+        }
+    }
+
+    @Test
+    public void should_accept_booleans_as_literals_or_integers() {
+        Assert.assertTrue(QueryDispatcher._isType("true", 0, 4, QueryDispatcher.ParameterType.BOOLEAN));
+        Assert.assertTrue(QueryDispatcher._isType("false", 0, 5, QueryDispatcher.ParameterType.BOOLEAN));
+        Assert.assertTrue(QueryDispatcher._isType("0", 0, 1, QueryDispatcher.ParameterType.BOOLEAN));
+        Assert.assertTrue(QueryDispatcher._isType("1", 0, 1, QueryDispatcher.ParameterType.BOOLEAN));
+        Assert.assertFalse(QueryDispatcher._isType("null", 0, 4, QueryDispatcher.ParameterType.BOOLEAN));
+        Assert.assertFalse(QueryDispatcher._isType("truex", 0, 5, QueryDispatcher.ParameterType.BOOLEAN));
+    }
+
+    @Test
+    public void should_answer_pongs_without_routing() {
+        _queryDispatcher.dispatch("{\"pong\":123}", null);
+        _queryDispatcher.dispatch("{\"pong\":\"abc\"}", null);
+
+        Assert.assertEquals(0, _handler.requests.size());
+        Assert.assertEquals(0, _listener.errorMessages.size());
+        Assert.assertEquals(2, _listener.pongs.size());
+        Assert.assertEquals(Long.valueOf(123L), _listener.pongs.get(0));
+        Assert.assertNull(_listener.pongs.get(1));
+    }
+}
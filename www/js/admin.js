@@ -14,6 +14,7 @@ window.app.createWebSocket = function() {
     const superOnMessage = window.app.webSocket.onmessage;
     window.app.webSocket.onmessage = function(event) {
         const superReturnValue = superOnMessage(event);
+        if (event.data instanceof ArrayBuffer) { return superReturnValue; } // Binary frames only contain player game state.
 
         const response = JSON.parse(event.data);
         if (response.globalGameState) {
@@ -40,7 +41,52 @@ window.app.createWebSocket = function() {
 };
 
 
+window.app.admin.selectedIndexes = null; // The labels selected while in "select" mode, by index; null when not selecting.
+
+window.app.admin.setSelecting = function(isSelecting) {
+    window.app.admin.selectedIndexes = (isSelecting ? {} : null);
+
+    $("#select-button").toggleClass("hidden", isSelecting);
+    $("#apply-button").toggleClass("hidden", (! isSelecting));
+    $("#cancel-button").toggleClass("hidden", (! isSelecting));
+
+    const gameState = window.app.admin.globalGameState;
+    if (gameState) {
+        window.app.renderGlobalGameState(gameState);
+    }
+};
+
+// Toggles every selected label with a single request, so players receive one update.
+window.app.admin.applySelection = function() {
+    const selectedIndexes = window.app.admin.selectedIndexes;
+    const globalGameState = window.app.admin.globalGameState;
+    if ( (! selectedIndexes) || (! globalGameState) ) { return; }
+
+    const marks = [];
+    for (const index in selectedIndexes) {
+        marks.push({
+            "index": window.parseInt(index),
+            "isMarked": (globalGameState[index] ? 0 : 1)
+        });
+    }
+
+    window.app.admin.setSelecting(false);
+    if (marks.length > 0) {
+        window.app.updateGlobalGameStateBatch(marks);
+    }
+};
+
 window.app.admin.bind = function() {
+    $("#select-button").bind("click", function() {
+        window.app.admin.setSelecting(true);
+    });
+    $("#apply-button").bind("click", function() {
+        window.app.admin.applySelection();
+    });
+    $("#cancel-button").bind("click", function() {
+        window.app.admin.setSelecting(false);
+    });
+
     const setPassword = function(password) {
         window.app.admin.password = password;
 
@@ -109,6 +155,20 @@ window.app.updateGlobalGameState = function(index, isMarked, callback) {
     });
 };
 
+window.app.updateGlobalGameStateBatch = function(marks, callback) {
+    window.app.send({
+        "query": "updateGlobalGameStateBatch",
+        "parameters": {
+            "marks": marks,
+            "password": window.app.admin.password
+        }
+    }, function(response) {
+        if (typeof callback == "function") {
+            callback(response.wasSuccess ? response.globalGameState : null);
+        }
+    });
+};
+
 window.app.banWinner = function(username, callback) {
     window.app.send({
         "query": "banWinner",
@@ -144,6 +204,7 @@ window.app.renderGlobalGameState = function(globalGameState) {
     const bingoWinners = window.app.data.bingoWinners || [];
 
     const main = $("#main");
+    const markControls = $("#mark-controls");
     const bingoContainer = $("#bingo");
     const playersContainer = $("#players");
     const winnersContainer = $("#winners");
@@ -157,6 +218,9 @@ window.app.renderGlobalGameState = function(globalGameState) {
             const div = $("<div></div>");
             div.toggleClass("marked", globalGameState[index]);
 
+            const selectedIndexes = window.app.admin.selectedIndexes;
+            div.toggleClass("selected", ((selectedIndexes && selectedIndexes[index]) ? true : false));
+
             const span = $("<span></span>");
             span.toggleClass("noselect", true);
 
@@ -164,6 +228,18 @@ window.app.renderGlobalGameState = function(globalGameState) {
             div.append(span);
 
             div.bind("click", function() {
+                const selectedIndexes = window.app.admin.selectedIndexes;
+                if (selectedIndexes) {
+                    if (selectedIndexes[index]) {
+                        delete selectedIndexes[index];
+                    }
+                    else {
+                        selectedIndexes[index] = true;
+                    }
+                    div.toggleClass("selected", (selectedIndexes[index] ? true : false));
+                    return;
+                }
+
                 const isMarked = globalGameState[index];
                 window.app.updateGlobalGameState(index, isMarked ? 0 : 1);
             });
@@ -227,6 +303,7 @@ window.app.renderGlobalGameState = function(globalGameState) {
         }
     })();
 
+    markControls.toggleClass("hidden", false);
     main.toggleClass("hidden", false);
 };
 
@@ -4,9 +4,115 @@ window.app.requestId = 0;
 window.app.requests = {};
 window.app.data = {};
 window.app.data.labels = [];
-window.app.gameState = null;
+window.app.data.version = null;
+window.app.data.pendingMarks = [];
+window.app.data.isReloadingGameState = false;
+
+// Pages opened with "?room=<roomId>" join that room; otherwise the default room is joined.
+window.app.roomId = new URLSearchParams(window.location.search).get("room");
+window.app.webSocketEndpoint = (window.app.roomId ? ("/api/v1/rooms/" + encodeURIComponent(window.app.roomId) + "/websocket") : "/api/v1/websocket");
+
+// Messages are received as Json by default; pages opened with "?encoding=binary" opt in to receiving game state updates as
+//  compact binary frames (see WebSocketBinaryProtocol.java), which every other message continues to be sent alongside as Json.
+window.app.useBinaryEncoding = (new URLSearchParams(window.location.search).get("encoding") == "binary");
+if (window.app.useBinaryEncoding) {
+    window.app.webSocketEndpoint += "?encoding=binary";
+}
+
+window.app.BinaryFrameType = {
+    GAME_STATE: 1,
+    MARK: 3,
+    MARK_BATCH: 4
+};
+
+// Returns the 64-bit integer as a Number; only exact for values within Number.MAX_SAFE_INTEGER, such as jackpots and versions.
+window.app.readInt64 = function(dataView, offset) {
+    return (dataView.getInt32(offset) * 4294967296) + dataView.getUint32(offset + 4);
+};
+
+// Returns the 64-bit integer as a BigInt, for values that use the full 64 bits, such as seeds.
+window.app.readBigInt64 = function(dataView, offset) {
+    return ((BigInt(dataView.getInt32(offset)) << 32n) | BigInt(dataView.getUint32(offset + 4)));
+};
+
+window.app.createMarksJson = function(width, cellCount, marks) {
+    const values = [];
+    for (let i = 0; i < cellCount; ++i) {
+        values.push((marks & (1 << i)) != 0);
+    }
+    return { "width": width, "values": values };
+};
+
+// Decodes a binary frame (see WebSocketBinaryProtocol.java) into the same object as its Json equivalent; returns null if the frame cannot be applied.
+window.app.decodeBinaryFrame = function(arrayBuffer) {
+    const dataView = new DataView(arrayBuffer);
+    const type = dataView.getUint8(0);
+
+    if (type == window.app.BinaryFrameType.GAME_STATE) {
+        const requestId = dataView.getUint32(1);
+        const width = dataView.getUint8(5);
+        const cellCount = dataView.getUint8(6);
+        let offset = 7;
+
+        const layoutValues = [];
+        for (let i = 0; i < cellCount; ++i) {
+            layoutValues.push(dataView.getUint16(offset));
+            offset += 2;
+        }
+        const marks = dataView.getUint32(offset);
+        const jackpot = window.app.readInt64(dataView, offset + 4);
+        const version = window.app.readInt64(dataView, offset + 12);
+        const seed = window.app.readBigInt64(dataView, offset + 20);
+
+        return {
+            "requestId": (requestId ? requestId : null),
+            "wasSuccess": 1,
+            "gameState": {
+                "seed": seed,
+                "layout": { "width": width, "values": layoutValues },
+                "marks": window.app.createMarksJson(width, cellCount, marks)
+            },
+            "jackpot": jackpot,
+            "version": version
+        };
+    }
+
+    if (type == window.app.BinaryFrameType.MARK) {
+        return {
+            "requestId": null,
+            "wasSuccess": 1,
+            "marked": dataView.getUint16(1),
+            "isMarked": (dataView.getUint8(3) != 0),
+            "jackpot": window.app.readInt64(dataView, 4),
+            "version": window.app.readInt64(dataView, 12)
+        };
+    }
+
+    if (type == window.app.BinaryFrameType.MARK_BATCH) {
+        const markCount = dataView.getUint16(1);
+        let offset = 3;
+
+        const markBatch = [];
+        for (let i = 0; i < markCount; ++i) {
+            markBatch.push({
+                "marked": dataView.getUint16(offset),
+                "isMarked": (dataView.getUint8(offset + 2) != 0)
+            });
+            offset += 3;
+        }
 
-window.app.webSocketEndpoint = "/api/v1/websocket";
+        return {
+            "requestId": null,
+            "wasSuccess": 1,
+            "markBatch": markBatch,
+            "jackpot": window.app.readInt64(dataView, offset),
+            "version": window.app.readInt64(dataView, offset + 8)
+        };
+    }
+
+    console.log("Unknown binary frame type: " + type);
+    return null;
+};
 
 window.app.createWebSocket = function() {
     if (window.app.webSocket) {
@@ -25,12 +131,16 @@ window.app.createWebSocket = function() {
         window.app.webSocket = new WebSocket("wss://" + window.location.host + window.app.webSocketEndpoint);
     }
 
+    window.app.webSocket.binaryType = "arraybuffer";
+
     window.app.webSocket.onopen = function() {
         window.app.init();
     };
 
     window.app.webSocket.onmessage = function(event) {
-        const response = JSON.parse(event.data);
+        const response = ((event.data instanceof ArrayBuffer) ? window.app.decodeBinaryFrame(event.data) : JSON.parse(event.data));
+        if (! response) { return false; }
+
         const requestId = response.requestId;
 
         if (requestId) {
@@ -42,8 +152,13 @@ window.app.createWebSocket = function() {
         }
         else {
             if (typeof response.gameState != "undefined") {
-                window.app.data.gameState = response.gameState;
-                window.app.renderGameState(response.gameState);
+                window.app.setGameState(response.gameState, response.version);
+            }
+            if (typeof response.marked != "undefined") {
+                window.app.applyMark(response);
+            }
+            if (typeof response.markBatch != "undefined") {
+                window.app.applyMarkBatch(response);
             }
             if (typeof response.bingoWinners != "undefined") {
                 const previousWinnerCount = (window.app.data.bingoWinners || []).length;
@@ -74,6 +189,7 @@ window.app.createWebSocket = function() {
         console.log("WebSocket closed.");
         window.app.requests = {};
         window.app.webSocket = null;
+        window.app.data.isReloadingGameState = false; // The pending reload's response will never arrive.
 
         window.setTimeout(function() {
             window.app.createWebSocket();
@@ -105,12 +221,11 @@ window.app.init = function() {
 
 window.app.bind = function() {
     const setUsername = function(username) {
-        window.app.setUser(username, function(gameState, jackpot) {
+        window.app.setUser(username, function(gameState, jackpot, version) {
             window.app.render();
 
             if (gameState) {
-                window.app.data.gameState = gameState;
-                window.app.renderGameState(gameState);
+                window.app.setGameState(gameState, version);
             }
             if (jackpot) {
                 window.app.data.jackpot = window.parseInt(jackpot);
@@ -197,6 +312,95 @@ window.app.renderGameState = function(gameState) {
     container.toggle(true);
 };
 
+window.app.setGameState = function(gameState, version) {
+    window.app.data.gameState = gameState;
+    window.app.data.version = (typeof version != "undefined" ? version : null);
+
+    // Apply any marks that arrived while the board was loading...
+    const pendingMarks = window.app.data.pendingMarks;
+    window.app.data.pendingMarks = [];
+    for (let i = 0; i < pendingMarks.length; ++i) {
+        window.app.applyMark(pendingMarks[i], true);
+    }
+
+    window.app.renderGameState(gameState);
+};
+
+window.app.applyMark = function(mark, skipRender) {
+    const gameState = window.app.data.gameState;
+    if (! gameState) {
+        if (window.app.data.username) { // The board is still loading...
+            window.app.data.pendingMarks.push(mark);
+        }
+        return;
+    }
+
+    const version = window.app.data.version;
+    if (version != null) {
+        if (mark.version <= version) { return; } // Already applied.
+
+        if (mark.version != (version + 1)) { // A mark was missed; reload the board.
+            window.app.reloadGameState();
+            return;
+        }
+    }
+
+    const layout = gameState.layout.values;
+    const marks = gameState.marks.values;
+    for (let i = 0; i < layout.length; ++i) {
+        if (layout[i] == mark.marked) {
+            marks[i] = (mark.isMarked ? true : false);
+        }
+    }
+    window.app.data.version = mark.version;
+
+    if (! skipRender) {
+        window.app.renderGameState(gameState);
+    }
+};
+
+// Each mark within the batch advanced the version by one; the batch's version is the version after its final mark.
+window.app.applyMarkBatch = function(response) {
+    const markBatch = response.markBatch;
+    const firstVersion = (response.version - markBatch.length + 1);
+
+    // The batch's marks are consecutive, so if the batch does not continue from the board's version then the board is reloaded once...
+    const version = window.app.data.version;
+    if (window.app.data.gameState && (version != null) && (firstVersion > (version + 1))) {
+        window.app.reloadGameState();
+        return;
+    }
+
+    for (let i = 0; i < markBatch.length; ++i) {
+        const mark = markBatch[i];
+        window.app.applyMark({ "marked": mark.marked, "isMarked": mark.isMarked, "version": (firstVersion + i) }, true);
+    }
+
+    if (window.app.data.gameState) {
+        window.app.renderGameState(window.app.data.gameState);
+    }
+};
+
+// Marks that arrive while a reload is pending are skipped rather than starting another reload; the reloaded board includes them.
+window.app.reloadGameState = function() {
+    const username = window.app.data.username;
+    if ( (! username) || (! window.app.webSocket) ) { return; }
+    if (window.app.data.isReloadingGameState) { return; }
+
+    window.app.data.isReloadingGameState = true;
+    window.app.send({
+        "query": "getGameState",
+        "parameters": {
+            "username": username
+        }
+    }, function(response) {
+        window.app.data.isReloadingGameState = false;
+        if (response.wasSuccess && response.gameState) {
+            window.app.setGameState(response.gameState, response.version);
+        }
+    });
+};
+
 window.app.renderBingoWinners = function(players) {
     const winnerContainer = $("#winner-container");
     if ( (! players) || players.length == 0) {
@@ -225,6 +429,7 @@ window.app.renderBingoWinners = function(players) {
 };
 
 window.app.setUser = function(user, callback) {
+    window.app.data.username = user;
     window.app.send({
         "query": "getGameState",
         "parameters": {
@@ -233,7 +438,7 @@ window.app.setUser = function(user, callback) {
     }, function(response) {
         if (response.wasSuccess) {
             if (typeof callback == "function") {
-                callback(response.gameState, response.jackpot);
+                callback(response.gameState, response.jackpot, response.version);
             }
         }
     });